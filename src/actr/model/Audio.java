@@ -66,8 +66,13 @@ public class Audio extends Module {
 		if (auralloc != null) {
 			double detectDelay = (auralloc.get(Symbol.kind) == Symbol.tone) ? toneDetectDelay
 					: digitDetectDelay;
-			model.addEvent(new Event(model.getTime() + detectDelay, "audio",
-					"audio-event [" + auralloc.getName() + "]") {
+			model.addEvent(new Event(model.getTime() + detectDelay, Symbol.audio,
+					"audio-event") {
+				@Override
+				protected String describe() {
+					return "audio-event [" + auralloc.getName() + "]";
+				}
+
 				@Override
 				public void action() {
 					audicon.put(Symbol.get(id), ao);
@@ -171,8 +176,13 @@ public class Audio extends Module {
 					Symbol.busy);
 			model.getBuffers().setSlot(Symbol.auralState, Symbol.buffer,
 					Symbol.requested);
-			model.addEvent(new Event(model.getTime() + recodeDelay, "audio",
-					"audio-encoding-complete [" + aural.getName() + "]") {
+			model.addEvent(new Event(model.getTime() + recodeDelay, Symbol.audio,
+					"audio-encoding-complete") {
+				@Override
+				protected String describe() {
+					return "audio-encoding-complete [" + aural.getName() + "]";
+				}
+
 				@Override
 				public void action() {
 					model.getBuffers().set(Symbol.aural, aural);
@@ -0,0 +1,51 @@
+package actr.model;
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch state for matching a production against the buffers: the
+ * values bound so far to the production's variables, indexed as compiled by
+ * <tt>Production.compileVariables()</tt>, and the slot conditions whose slot
+ * variable was not yet bound when they were reached. After a failed match,
+ * <tt>failedBuffer</tt> names the buffer whose emptiness or constant slot
+ * test failed, if the failure did not depend on the bindings. A matcher keeps
+ * one instance per thread and reuses it for every production it tests.
+ * 
+ * @author Dario Salvucci
+ */
+class Bindings {
+	Symbol[] values = new Symbol[16];
+	int threadID;
+	Chunk chunk;
+	Symbol failedBuffer;
+
+	Symbol[] delayedBuffers = new Symbol[4];
+	SlotCondition[] delayedConditions = new SlotCondition[4];
+	Chunk[] delayedChunks = new Chunk[4];
+	int delayedCount;
+
+	void reset(int size) {
+		if (values.length < size)
+			values = new Symbol[Math.max(size, 2 * values.length)];
+		else
+			Arrays.fill(values, 0, size, null);
+		threadID = 0;
+		chunk = null;
+		failedBuffer = null;
+		Arrays.fill(delayedChunks, 0, delayedCount, null);
+		delayedCount = 0;
+	}
+
+	void delay(Symbol buffer, SlotCondition sc, Chunk bufferChunk) {
+		if (delayedCount == delayedConditions.length) {
+			int n = 2 * delayedCount;
+			delayedBuffers = Arrays.copyOf(delayedBuffers, n);
+			delayedConditions = Arrays.copyOf(delayedConditions, n);
+			delayedChunks = Arrays.copyOf(delayedChunks, n);
+		}
+		delayedBuffers[delayedCount] = buffer;
+		delayedConditions[delayedCount] = sc;
+		delayedChunks[delayedCount] = bufferChunk;
+		delayedCount++;
+	}
+}
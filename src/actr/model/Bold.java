@@ -12,6 +12,7 @@ import java.util.Vector;
 public class Bold {
 	private Model model;
 	private Map<Symbol, Activity> activities;
+	private actr.model.Event updateEvent;
 
 	boolean brainImaging = false;
 	double boldScale = .75;
@@ -88,13 +89,14 @@ public class Bold {
 		model.updateVisuals();
 
 		if (model.getEvents().hasMoreEvents()) {
-			model.addEvent(new actr.model.Event(
-					model.getTime() + boldIncrement, "bold", "") {
-				@Override
-				public void action() {
-					update();
-				}
-			});
+			if (updateEvent == null)
+				updateEvent = new actr.model.Event(0, Symbol.bold, "") {
+					@Override
+					public void action() {
+						update();
+					}
+				};
+			model.rescheduleEvent(updateEvent, model.getTime() + boldIncrement);
 		}
 	}
 
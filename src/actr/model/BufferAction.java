@@ -69,6 +69,17 @@ class BufferAction {
 		return true;
 	}
 
+	int structuralHash() {
+		int h = 31 * prefix + buffer.structuralHash();
+		for (int i = 0; i < slotActions.size(); i++)
+			h = 31 * h + slotActions.elementAt(i).structuralHash();
+		h = 31 * h + ((directAction == null) ? 0 : directAction.structuralHash());
+		h = 31 * h + ((bind == null) ? 0 : bind.structuralHash());
+		for (int i = 0; i < specials.size(); i++)
+			h = 31 * h + Symbol.structuralHash(specials.elementAt(i));
+		return h;
+	}
+
 	/**
 	 * Gets the buffer action's prefix (one of <tt>= + - !</tt>).
 	 * 
@@ -246,6 +257,7 @@ class BufferAction {
 			}
 			for (int i = 0; i < slotActions.size(); i++)
 				slotActions.elementAt(i).fire(inst, bufferChunk);
+			model.getBuffers().changed(buffer);
 		} else if (prefix == '+') {
 			if (model.getDeclarative().addChunkOnNewRequest)
 				storeInMemory(buffer, inst, false);
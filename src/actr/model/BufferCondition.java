@@ -1,6 +1,8 @@
 package actr.model;
 
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -15,6 +17,8 @@ class BufferCondition {
 	private Symbol buffer;
 	private Vector<SlotCondition> slotConditions;
 	private Vector<String> specials;
+	private int bufferIndex = -1;
+	private int[] specialIndices;
 
 	BufferCondition(char prefix, Symbol buffer, Model model) {
 		this.prefix = prefix;
@@ -60,6 +64,15 @@ class BufferCondition {
 		return true;
 	}
 
+	int structuralHash() {
+		int h = 31 * prefix + buffer.structuralHash();
+		for (int i = 0; i < slotConditions.size(); i++)
+			h = 31 * h + slotConditions.elementAt(i).structuralHash();
+		for (int i = 0; i < specials.size(); i++)
+			h = 31 * h + Symbol.structuralHash(specials.elementAt(i));
+		return h;
+	}
+
 	/**
 	 * Gets the buffer condition's prefix (one of <tt>= !</tt>).
 	 * 
@@ -160,6 +173,21 @@ class BufferCondition {
 		return (prefix == '!');
 	}
 
+	boolean isAffectedBy(Set<Symbol> changedSlots) {
+		if (changedSlots == null)
+			return true;
+		for (int i = 0; i < slotConditions.size(); i++) {
+			Symbol slot = slotConditions.elementAt(i).getSlot();
+			if (slot.isVariable() || changedSlots.contains(slot))
+				return true;
+		}
+		return false;
+	}
+
+	Iterator<String> getSpecials() {
+		return specials.iterator();
+	}
+
 	void addCondition(SlotCondition sc) {
 		slotConditions.add(sc);
 	}
@@ -206,11 +234,7 @@ class BufferCondition {
 					special = inst.get(Symbol.get(special)).getString();
 				tokens.add(special);
 			}
-			try {
-				return Utilities.evalComputeCondition(tokens.iterator());
-			} catch (Exception e) {
-				return model.getTask().evalCondition(tokens.iterator());
-			}
+			return evalSpecial(tokens);
 		} else {
 			Chunk bufferChunk = model.getBuffers().get(buffer);
 			if (bufferChunk != null && prefix == '=')
@@ -223,6 +247,57 @@ class BufferCondition {
 		}
 	}
 
+	private boolean evalSpecial(Vector<String> tokens) {
+		try {
+			return Utilities.evalComputeCondition(tokens.iterator());
+		} catch (Exception e) {
+			return model.getTask().evalCondition(tokens.iterator());
+		}
+	}
+
+	void compileVariables(Map<Symbol, Integer> indices) {
+		bufferIndex = (prefix == '=') ? indices.get(Symbol.get("=" + buffer))
+				: -1;
+		specialIndices = new int[specials.size()];
+		for (int i = 0; i < specials.size(); i++) {
+			Symbol special = Symbol.get(specials.elementAt(i));
+			specialIndices[i] = special.isVariable() ? indices.get(special) : -1;
+		}
+		for (int i = 0; i < slotConditions.size(); i++)
+			slotConditions.elementAt(i).compileVariables(indices);
+	}
+
+	boolean match(Bindings bindings) {
+		if (prefix == '!') {
+			Vector<String> tokens = new Vector<String>();
+			for (int i = 0; i < specials.size(); i++) {
+				if (specialIndices[i] >= 0)
+					tokens.add(bindings.values[specialIndices[i]].getString());
+				else
+					tokens.add(specials.elementAt(i));
+			}
+			return evalSpecial(tokens);
+		}
+		Chunk bufferChunk = model.getBuffers().get(buffer);
+		if (bufferChunk == null) {
+			bindings.failedBuffer = buffer;
+			return false;
+		}
+		if (bufferIndex >= 0)
+			bindings.values[bufferIndex] = bufferChunk.getName();
+		for (int i = 0; i < slotConditions.size(); i++) {
+			SlotCondition sc = slotConditions.elementAt(i);
+			if (!sc.match(buffer, bufferChunk, bindings)) {
+				if (sc.isConstant())
+					bindings.failedBuffer = buffer;
+				return false;
+			}
+		}
+		if (buffer == Symbol.goal)
+			bindings.threadID = bufferChunk.getThreadID();
+		return true;
+	}
+
 	void specialize(Symbol variable, Symbol value) {
 		for (int i = 0; i < slotConditions.size(); i++)
 			slotConditions.elementAt(i).specialize(variable, value);
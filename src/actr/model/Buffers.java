@@ -1,9 +1,12 @@
 package actr.model;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Maintains the state of the ACT-R buffers.
@@ -14,8 +17,10 @@ public class Buffers {
 	private Model model;
 	private Map<Symbol, Chunk> buffers;
 	private Map<Symbol, Double> touchTimes;
-	private Vector<Chunk> goals;
+	private TreeSet<Chunk> goals;
+	private long goalsAdded = 0;
 	private double lastGoalSetTime = -1;
+	private Map<Symbol, Set<Symbol>> changes;
 
 	boolean bufferChunkDecay = false;
 	double bufferChunkLife = 10.0;
@@ -24,7 +29,18 @@ public class Buffers {
 		this.model = model;
 		buffers = new HashMap<Symbol, Chunk>();
 		touchTimes = new HashMap<Symbol, Double>();
-		goals = new Vector<Chunk>();
+		goals = new TreeSet<Chunk>(new Comparator<Chunk>() {
+			@Override
+			public int compare(Chunk c1, Chunk c2) {
+				if (c1.getLastUsedAsGoal() != c2.getLastUsedAsGoal())
+					return (c1.getLastUsedAsGoal() < c2.getLastUsedAsGoal()) ? -1
+							: 1;
+				if (c1.getGoalOrder() != c2.getGoalOrder())
+					return (c1.getGoalOrder() < c2.getGoalOrder()) ? -1 : 1;
+				return 0;
+			}
+		});
+		changes = new HashMap<Symbol, Set<Symbol>>();
 	}
 
 	/**
@@ -105,26 +121,30 @@ public class Buffers {
 		if (buffer == Symbol.goal) {
 			if (lastGoalSetTime < model.getTime()) {
 				Chunk oldGoal = get(Symbol.goal);
-				if (oldGoal != null)
+				if (oldGoal != null) {
 					c.setThreadID(oldGoal.getThreadID());
-				else
+					goals.remove(oldGoal);
+				} else
 					c.assignNewThreadID();
-				goals.remove(oldGoal);
 			} else
 				c.assignNewThreadID();
-			goals.add(c);
+			addGoal(c);
 			lastGoalSetTime = model.getTime();
 		}
 		buffers.put(buffer, c);
+		changed(buffer);
 
 		if (!isState(buffer)) {
 			touch(buffer);
 		}
 
 		if (!isState(buffer) && !c.isRequest()) {
-			Chunk state = get(Symbol.get("?" + buffer));
-			if (state != null)
+			Symbol stateBuffer = Symbol.get("?" + buffer);
+			Chunk state = get(stateBuffer);
+			if (state != null) {
 				state.set(Symbol.buffer, Symbol.full);
+				changed(stateBuffer, Symbol.buffer);
+			}
 		}
 
 		if (model.getBold().brainImaging)
@@ -133,8 +153,10 @@ public class Buffers {
 
 	void setSlot(Symbol buffer, Symbol slot, Symbol value) {
 		Chunk c = buffers.get(buffer);
-		if (c != null)
+		if (c != null) {
 			c.set(slot, value);
+			changed(buffer, slot);
+		}
 		if (!isState(buffer))
 			touch(buffer);
 
@@ -143,29 +165,34 @@ public class Buffers {
 	}
 
 	void clear(Symbol buffer) {
-		if (buffer == Symbol.goal)
-			goals.remove(buffers.get(buffer));
-		else if (buffer == Symbol.temporal)
-			model.removeEvents("temporal");
+		if (buffer == Symbol.goal) {
+			if (buffers.get(buffer) != null)
+				goals.remove(buffers.get(buffer));
+		} else if (buffer == Symbol.temporal)
+			model.removeEvents(Symbol.temporal);
 		else if (buffer == Symbol.retrieval)
-			model.removeEvents("declarative");
+			model.removeEvents(Symbol.declarative);
 		else if (buffer == Symbol.visual)
-			model.removeEvents("vision");
+			model.removeEvents(Symbol.vision);
 		else if (buffer == Symbol.aural)
-			model.removeEvents("audio");
+			model.removeEvents(Symbol.audio);
 		else if (buffer == Symbol.manual)
-			model.removeEvents("motor");
+			model.removeEvents(Symbol.motor);
 		else if (buffer == Symbol.vocal)
-			model.removeEvents("speech");
+			model.removeEvents(Symbol.speech);
 
 		buffers.remove(buffer);
 		touchTimes.remove(buffer);
+		changed(buffer);
 
 		if (!isState(buffer)) {
-			Chunk state = get(Symbol.get("?" + buffer));
+			Symbol stateBuffer = Symbol.get("?" + buffer);
+			Chunk state = get(stateBuffer);
 			if (state != null) {
 				state.set(Symbol.buffer, Symbol.empty);
 				state.set(Symbol.state, Symbol.free);
+				changed(stateBuffer, Symbol.buffer);
+				changed(stateBuffer, Symbol.state);
 			}
 		}
 
@@ -173,6 +200,34 @@ public class Buffers {
 			model.getBold().recordActivity(buffer);
 	}
 
+	void changed(Symbol buffer) {
+		changes.put(buffer, null);
+	}
+
+	void changed(Symbol buffer, Symbol slot) {
+		if (!changes.containsKey(buffer)) {
+			Set<Symbol> slots = new HashSet<Symbol>();
+			slots.add(slot);
+			changes.put(buffer, slots);
+		} else if (changes.get(buffer) != null)
+			changes.get(buffer).add(slot);
+	}
+
+	/**
+	 * Gets the buffers changed since the last call to <tt>clearChanges()</tt>,
+	 * each mapped to the set of its changed slots, or to <tt>null</tt> if the
+	 * buffer's chunk was set, cleared or modified as a whole.
+	 * 
+	 * @return the map of changed buffers to changed slots
+	 */
+	Map<Symbol, Set<Symbol>> getChanges() {
+		return changes;
+	}
+
+	void clearChanges() {
+		changes.clear();
+	}
+
 	void touch(Symbol buffer) {
 		touchTimes.put(buffer, new Double(model.getTime()));
 	}
@@ -198,28 +253,40 @@ public class Buffers {
 		}
 	}
 
-	void sortGoals() {
-		Vector<Chunk> v = new Vector<Chunk>();
-		while (goals.size() > 0) {
-			double minTime = 1e10;
-			Chunk min = null;
-			for (int i = 0; i < goals.size(); i++)
-				if (goals.elementAt(i).getLastUsedAsGoal() < minTime) {
-					min = goals.elementAt(i);
-					minTime = min.getLastUsedAsGoal();
-				}
-			v.add(min);
-			goals.remove(min);
-		}
-		goals = v;
+	private void addGoal(Chunk c) {
+		// the goals are ordered by last use and then by the order in which
+		// they were added, so a goal's keys must not change while it is queued
+		goals.remove(c);
+		c.setGoalOrder(++goalsAdded);
+		goals.add(c);
+	}
+
+	/**
+	 * Sets the time at which a goal chunk was last used in a production
+	 * firing, keeping the goals ordered by this time.
+	 */
+	void setLastUsedAsGoal(Chunk goal, double time) {
+		boolean queued = goals.remove(goal);
+		goal.setLastUsedAsGoal(time);
+		if (queued)
+			goals.add(goal);
 	}
 
 	int numGoals() {
 		return goals.size();
 	}
 
-	void tryGoal(int index) {
-		buffers.put(Symbol.goal, goals.elementAt(index));
+	/**
+	 * Gets the goals in the order in which they should be tried, starting
+	 * with the goal that was least recently used.
+	 */
+	Iterator<Chunk> getGoals() {
+		return goals.iterator();
+	}
+
+	void tryGoal(Chunk goal) {
+		if (buffers.put(Symbol.goal, goal) != goal)
+			changed(Symbol.goal);
 	}
 
 	void replaceSlotValues(Chunk c1, Chunk c2) {
@@ -231,8 +298,10 @@ public class Buffers {
 			while (slots.hasNext()) {
 				Symbol slot = slots.next();
 				Symbol value = chunk.get(slot);
-				if (value == c1.getName())
+				if (value == c1.getName()) {
 					chunk.set(slot, c2.getName());
+					changed(buffer, slot);
+				}
 			}
 		}
 	}
@@ -266,8 +335,9 @@ public class Buffers {
 		}
 
 		s += "\nGoals:\n";
-		for (int i = 0; i < goals.size(); i++)
-			s += goals.elementAt(i) + "\n";
+		Iterator<Chunk> itGoals = goals.iterator();
+		while (itGoals.hasNext())
+			s += itGoals.next() + "\n";
 
 		return s;
 	}
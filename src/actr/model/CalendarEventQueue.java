@@ -0,0 +1,260 @@
+package actr.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * An event queue implemented as a calendar queue (Brown, 1988), with amortized
+ * constant-time insertion and removal of the next event.
+ * <p>
+ * The event clock (in microseconds) is divided into slots of a fixed width,
+ * and each slot maps onto one of a circular array of buckets (the "days" of a
+ * year). Each bucket keeps its events sorted, so the next event is the first
+ * event of the first bucket, starting from the current slot, whose first
+ * event falls in that bucket's slot of the current year. Because a slot is
+ * computed directly from the integer clock and events within a bucket are
+ * sorted with {@link Event#compareTo(Event)}, the order is exactly that of the
+ * tree-based queue. The number of buckets doubles or halves with the number
+ * of events, and the slot width is then re-estimated from the spacing of the
+ * earliest events; ACT-R's fixed latencies (e.g., the 50 ms production cycle)
+ * keep this spacing regular.
+ * 
+ * @author Dario Salvucci
+ */
+class CalendarEventQueue implements EventQueue {
+	private static final int minBuckets = 16;
+	private static final int widthSamples = 25;
+
+	private Bucket[] buckets;
+	private long width;
+	private int size;
+	private long current;
+
+	// a sorted array of events, removed from the front and usually added at
+	// the back, since newer events at the same time sort after older ones
+	private static class Bucket {
+		Event[] events = new Event[4];
+		int head = 0;
+		int tail = 0;
+
+		boolean isEmpty() {
+			return head == tail;
+		}
+
+		Event first() {
+			return events[head];
+		}
+
+		Event pollFirst() {
+			Event e = events[head];
+			events[head++] = null;
+			if (head == tail)
+				head = tail = 0;
+			return e;
+		}
+
+		int search(Event event) {
+			int low = head;
+			int high = tail - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int c = events[mid].compareTo(event);
+				if (c < 0)
+					low = mid + 1;
+				else if (c > 0)
+					high = mid - 1;
+				else
+					return mid;
+			}
+			return -(low + 1);
+		}
+
+		boolean add(Event event) {
+			int index;
+			if (head == tail || events[tail - 1].compareTo(event) < 0)
+				index = tail;
+			else {
+				int found = search(event);
+				if (found >= 0)
+					return false;
+				index = -found - 1;
+			}
+			if (tail == events.length) {
+				// compact in place if at least half is free, or grow
+				int n = tail - head;
+				Event[] target = (2 * n <= events.length) ? events
+						: new Event[2 * events.length];
+				System.arraycopy(events, head, target, 0, n);
+				if (target == events)
+					Arrays.fill(events, n, tail, null);
+				events = target;
+				index -= head;
+				head = 0;
+				tail = n;
+			}
+			System.arraycopy(events, index, events, index + 1, tail - index);
+			events[index] = event;
+			tail++;
+			return true;
+		}
+
+		boolean remove(Event event) {
+			int index = search(event);
+			if (index < 0)
+				return false;
+			System.arraycopy(events, index + 1, events, index, tail - index - 1);
+			events[--tail] = null;
+			if (head == tail)
+				head = tail = 0;
+			return true;
+		}
+	}
+
+	CalendarEventQueue() {
+		width = Utilities.toClock(.050);
+		size = 0;
+		current = 0;
+		buckets = createBuckets(minBuckets);
+	}
+
+	private static Bucket[] createBuckets(int n) {
+		Bucket[] b = new Bucket[n];
+		for (int i = 0; i < n; i++)
+			b[i] = new Bucket();
+		return b;
+	}
+
+	private long slot(Event event) {
+		return Math.floorDiv(event.getClock(), width);
+	}
+
+	private Bucket bucket(long slot) {
+		return buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+	}
+
+	@Override
+	public boolean add(Event event) {
+		long s = slot(event);
+		if (!bucket(s).add(event))
+			return false;
+		if (size == 0 || s < current)
+			current = s;
+		size++;
+		if (size > 2 * buckets.length)
+			resize(2 * buckets.length);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		Event event = (Event) object;
+		if (!bucket(slot(event)).remove(event))
+			return false;
+		size--;
+		shrink();
+		return true;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private Event locate() {
+		if (size == 0)
+			return null;
+		int n = buckets.length;
+		for (int i = 0; i < n; i++) {
+			long s = current + i;
+			Bucket bucket = bucket(s);
+			if (!bucket.isEmpty() && slot(bucket.first()) == s) {
+				current = s;
+				return bucket.first();
+			}
+		}
+		// no event within the next year: search the bucket heads directly
+		Event first = null;
+		for (int i = 0; i < n; i++) {
+			Bucket bucket = buckets[i];
+			if (!bucket.isEmpty()
+					&& (first == null || bucket.first().compareTo(first) < 0))
+				first = bucket.first();
+		}
+		current = slot(first);
+		return first;
+	}
+
+	@Override
+	public Event first() {
+		Event e = locate();
+		if (e == null)
+			throw new NoSuchElementException();
+		return e;
+	}
+
+	@Override
+	public Event pollFirst() {
+		if (locate() == null)
+			return null;
+		Event e = bucket(current).pollFirst();
+		size--;
+		shrink();
+		return e;
+	}
+
+	private void shrink() {
+		if (buckets.length > minBuckets && size < buckets.length / 2)
+			resize(buckets.length / 2);
+	}
+
+	private TreeSet<Event> sorted() {
+		TreeSet<Event> all = new TreeSet<Event>();
+		for (int i = 0; i < buckets.length; i++) {
+			Bucket bucket = buckets[i];
+			for (int j = bucket.head; j < bucket.tail; j++)
+				all.add(bucket.events[j]);
+		}
+		return all;
+	}
+
+	private void resize(int n) {
+		TreeSet<Event> all = sorted();
+
+		// estimate the width as three times the average separation of the
+		// earliest events, keeping the old width if they all coincide
+		Iterator<Event> it = all.iterator();
+		long start = all.isEmpty() ? 0 : all.first().getClock();
+		long end = start;
+		int count = 0;
+		for (; count < widthSamples && it.hasNext(); count++)
+			end = it.next().getClock();
+		if (end > start)
+			width = Math.max(1, 3 * (end - start) / (count - 1));
+
+		buckets = createBuckets(n);
+		it = all.iterator();
+		while (it.hasNext()) {
+			Event e = it.next();
+			bucket(slot(e)).add(e);
+		}
+		current = all.isEmpty() ? 0 : slot(all.first());
+	}
+
+	/**
+	 * Gets an iterator over a snapshot of the events in order; this is meant for
+	 * output and copying rather than for frequent use.
+	 * 
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return sorted().iterator();
+	}
+}
@@ -25,6 +25,8 @@ public class Chunk {
 	private boolean retrieved;
 	private double retrievalTime;
 	private double lastUsedAsGoal = 0;
+	private long goalOrder = 0;
+	private long memoryOrder = 0;
 	private Map<Symbol, Symbol> slots;
 	private List<SlotCondition> requestConditions;
 	private double creationTime;
@@ -137,6 +139,22 @@ public class Chunk {
 		lastUsedAsGoal = time;
 	}
 
+	long getGoalOrder() {
+		return goalOrder;
+	}
+
+	void setGoalOrder(long order) {
+		goalOrder = order;
+	}
+
+	long getMemoryOrder() {
+		return memoryOrder;
+	}
+
+	void setMemoryOrder(long order) {
+		memoryOrder = order;
+	}
+
 	/**
 	 * Gets the value of the given slot, or <tt>Symbol.nil</tt> if the slot is
 	 * undefined.
@@ -188,8 +206,14 @@ public class Chunk {
 	 */
 	public void set(Symbol slot, Symbol value) {
 		boolean adjustFan = (model.getDeclarative().get(name) != null);
+		boolean indexed = (model.getDeclarative().get(name) == this);
 
 		Symbol oldValue = get(slot);
+		if (indexed) {
+			model.getDeclarative().unindexContent(this);
+			if (slots.get(slot) != null)
+				model.getDeclarative().unindexSlot(this, slot, slots.get(slot));
+		}
 		if (adjustFan && oldValue != Symbol.nil) {
 			Chunk oldValueChunk = model.getDeclarative().get(oldValue);
 			if (oldValueChunk != null)
@@ -198,16 +222,21 @@ public class Chunk {
 
 		if (value == Symbol.nil && !slot.getString().startsWith(":"))
 			slots.remove(slot);
-		else {
+		else
 			slots.put(slot, value);
-			if (adjustFan && slot != Symbol.isa && value != Symbol.nil) {
-				Chunk valueChunk = model.getDeclarative().get(value);
-				if (valueChunk == null) {
-					valueChunk = new Chunk(value, model);
-					valueChunk = model.getDeclarative().add(valueChunk);
-				}
-				valueChunk.increaseFan();
+		if (indexed) {
+			model.getDeclarative().indexContent(this);
+			if (slots.get(slot) != null)
+				model.getDeclarative().indexSlot(this, slot, slots.get(slot));
+		}
+
+		if (adjustFan && slot != Symbol.isa && value != Symbol.nil) {
+			Chunk valueChunk = model.getDeclarative().get(value);
+			if (valueChunk == null) {
+				valueChunk = new Chunk(value, model);
+				valueChunk = model.getDeclarative().add(valueChunk);
 			}
+			valueChunk.increaseFan();
 		}
 	}
 
@@ -256,6 +285,35 @@ public class Chunk {
 		return true;
 	}
 
+	/**
+	 * Computes a hash of the chunk's slots and values that is the same for
+	 * all chunks that are equal as defined by <tt>equals(Chunk)</tt>. Each
+	 * slot-value pair is scrambled before the pairs are summed, so that the
+	 * hash does not depend on the order of the slots but chunks that differ
+	 * only in which slots hold which values (e.g., swapped values, or numbers
+	 * with the same total) still hash apart.
+	 */
+	int contentHash() {
+		int h = slotCount();
+		Iterator<Symbol> it = getSlotNames();
+		while (it.hasNext()) {
+			Symbol slot = it.next();
+			h += mix(31 * mix(slot.getString().hashCode())
+					+ get(slot).getString().hashCode());
+		}
+		return h;
+	}
+
+	// the finalizer of the MurmurHash3 hash function
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
 	double computeBaseLevel() {
 		if (!model.getDeclarative().baseLevelLearning)
 			return baseLevel;
@@ -284,7 +342,7 @@ public class Chunk {
 		Iterator<Symbol> it = c2.slots.keySet().iterator();
 		while (it.hasNext()) {
 			Symbol slot = it.next();
-			if (slot != Symbol.get("isa")) {
+			if (slot != Symbol.isa) {
 				Symbol value = c2.get(slot);
 				if (value == name)
 					count++;
@@ -293,6 +351,10 @@ public class Chunk {
 		return count;
 	}
 
+	int getFan() {
+		return fan;
+	}
+
 	void setFan(int f) {
 		fan = f;
 	}
@@ -310,7 +372,8 @@ public class Chunk {
 	}
 
 	double computeSji(Chunk cj, Chunk ci) {
-		if (cj.appearsInSlotsOf(ci) == 0 && cj.getName() != ci.getName())
+		if (cj.getName() != ci.getName()
+				&& !model.getDeclarative().isReferencedBy(cj, ci))
 			return 0;
 		else
 			return model.getDeclarative().maximumAssociativeStrength
@@ -358,9 +421,11 @@ public class Chunk {
 		return model.getDeclarative().mismatchPenalty * sum;
 	}
 
-	double computeActivation(Chunk request) {
+	double computeActivation(Chunk request, SpreadingActivation spreading) {
 		activation = computeBaseLevel();
-		if (model.getDeclarative().spreadingActivation) {
+		if (spreading != null)
+			activation = spreading.addTo(this, activation);
+		else if (model.getDeclarative().spreadingActivation) {
 			if (model.getDeclarative().goalActivation > 0) {
 				Chunk goal = model.getBuffers().get(Symbol.goal);
 				if (goal != null)
@@ -0,0 +1,144 @@
+package actr.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of production compilation results, keyed by the two
+ * productions that fired and their variable bindings.
+ * <p>
+ * The result of compiling two firings depends only on the two productions and
+ * the bindings of their instantiations (retrieval compilation specializes all
+ * variables), so a well-practiced model that fires the same pair with the
+ * same bindings again gets the earlier result, or the earlier verdict that
+ * the productions cannot be combined, without rebuilding it. The least
+ * recently used entries are dropped when the cache is full.
+ * 
+ * @author Dario Salvucci
+ */
+class CompilationCache {
+	private Model model;
+	private LinkedHashMap<Key, Production> cache;
+	private int capacity;
+	private int hits = 0;
+	private int misses = 0;
+
+	class Key {
+		Production p1, p2;
+		Map<Symbol, Symbol> bindings1, bindings2;
+		int hash;
+
+		Key(Instantiation inst1, Instantiation inst2) {
+			p1 = inst1.getProduction();
+			p2 = inst2.getProduction();
+			bindings1 = getBindings(inst1);
+			bindings2 = getBindings(inst2);
+			hash = 31 * (31 * p1.getName().getString().hashCode() + p2
+					.getName().getString().hashCode())
+					+ hashBindings(bindings1) + 17 * hashBindings(bindings2);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return p1 == k.p1 && p2 == k.p2 && bindings1.equals(k.bindings1)
+					&& bindings2.equals(k.bindings2);
+		}
+	}
+
+	CompilationCache(Model model, int capacity) {
+		this.model = model;
+		this.capacity = capacity;
+		cache = new LinkedHashMap<Key, Production>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Production> e) {
+				return size() > CompilationCache.this.capacity;
+			}
+		};
+	}
+
+	private static Map<Symbol, Symbol> getBindings(Instantiation inst) {
+		Map<Symbol, Symbol> bindings = new HashMap<Symbol, Symbol>();
+		Iterator<Symbol> it = inst.getVariables();
+		while (it.hasNext()) {
+			Symbol variable = it.next();
+			bindings.put(variable, inst.get(variable));
+		}
+		return bindings;
+	}
+
+	private static int hashBindings(Map<Symbol, Symbol> bindings) {
+		int h = 0;
+		Iterator<Symbol> it = bindings.keySet().iterator();
+		while (it.hasNext()) {
+			Symbol variable = it.next();
+			Symbol value = bindings.get(variable);
+			h += variable.getString().hashCode()
+					^ ((value == null) ? 0 : value.getString().hashCode());
+		}
+		return h;
+	}
+
+	/**
+	 * Compiles the productions of two successive firings, using the cached
+	 * result if the same productions have fired with the same bindings. A
+	 * cached production is returned as a new copy so that it can be added to
+	 * procedural memory again.
+	 * 
+	 * @return the compiled production, or <tt>null</tt> if the productions
+	 *         cannot be combined
+	 */
+	Production compile(Instantiation inst1, Instantiation inst2) {
+		if (capacity <= 0)
+			return new Compilation(inst1, inst2, model).compile();
+		if ((inst2.getTime() - inst1.getTime()) >= model.getProcedural()
+				.productionCompilationThresholdTime)
+			return null;
+		Key key = new Key(inst1, inst2);
+		if (cache.containsKey(key)) {
+			hits++;
+			Production p = cache.get(key);
+			if (p == null)
+				return null;
+			Production newp = p.copy(Symbol.getUnique(inst1.getProduction()
+					.getName() + "++" + inst2.getProduction().getName()));
+			newp.setUtility(model.getProcedural()
+					.productionCompilationNewUtility);
+			return newp;
+		}
+		misses++;
+		Production newp = new Compilation(inst1, inst2, model).compile();
+		cache.put(key, newp);
+		return newp;
+	}
+
+	void setCapacity(int capacity) {
+		this.capacity = capacity;
+		if (capacity <= 0)
+			cache.clear();
+		else {
+			Iterator<Key> it = cache.keySet().iterator();
+			while (cache.size() > capacity && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	int getHits() {
+		return hits;
+	}
+
+	int getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,293 @@
+package actr.model;
+
+import java.util.Iterator;
+import java.util.Vector;
+
+/**
+ * A matcher specialized for the conditions of a single production.
+ * <p>
+ * The generic matcher in <tt>BufferCondition</tt> and <tt>SlotCondition</tt>
+ * decides on every test whether the slot and value are variables, whether a
+ * variable is already bound, which operator applies, and parses numbers for
+ * <tt>&lt;</tt> and <tt>&gt;</tt> tests. The compiled matcher makes these
+ * decisions once, when the production is compiled, and reduces the
+ * production to an array of small steps, each with its constants, operator
+ * and variable index built in, so that the JIT can inline each step's test.
+ * Conditions that depend on run-time binding order (variable slot names and
+ * their values) and special <tt>!</tt> conditions fall back to the generic
+ * matcher.
+ * 
+ * @author Dario Salvucci
+ */
+class CompiledMatcher {
+	private Step[] steps;
+	private Symbol[] failedBuffers;
+
+	abstract static class Step {
+		abstract boolean test(Bindings bindings);
+	}
+
+	static final class BufferStep extends Step {
+		private final Buffers buffers;
+		private final Symbol buffer;
+		private final int index;
+		private final boolean goal;
+
+		BufferStep(Buffers buffers, Symbol buffer, int index) {
+			this.buffers = buffers;
+			this.buffer = buffer;
+			this.index = index;
+			goal = (buffer == Symbol.goal);
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			Chunk chunk = buffers.get(buffer);
+			if (chunk == null)
+				return false;
+			bindings.chunk = chunk;
+			if (index >= 0)
+				bindings.values[index] = chunk.getName();
+			if (goal)
+				bindings.threadID = chunk.getThreadID();
+			return true;
+		}
+	}
+
+	static final class EqualsStep extends Step {
+		private final Declarative declarative;
+		private final Symbol slot;
+		private final Symbol value;
+
+		EqualsStep(Declarative declarative, Symbol slot, Symbol value) {
+			this.declarative = declarative;
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			Symbol bufferValue = bindings.chunk.get(slot);
+			return (bufferValue == value) || declarative.isa(bufferValue, value);
+		}
+	}
+
+	static final class NotEqualsStep extends Step {
+		private final Declarative declarative;
+		private final Symbol slot;
+		private final Symbol value;
+
+		NotEqualsStep(Declarative declarative, Symbol slot, Symbol value) {
+			this.declarative = declarative;
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			Symbol bufferValue = bindings.chunk.get(slot);
+			return (bufferValue != value)
+					&& !declarative.isa(bufferValue, value);
+		}
+	}
+
+	static final class NumberStep extends Step {
+		static final int LT = 0, GT = 1, LE = 2, GE = 3;
+
+		private final Symbol slot;
+		private final int operator;
+		private final double value;
+
+		NumberStep(Symbol slot, int operator, double value) {
+			this.slot = slot;
+			this.operator = operator;
+			this.value = value;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			double bufferNumber = bindings.chunk.get(slot).toDouble();
+			switch (operator) {
+			case LT:
+				return bufferNumber < value;
+			case GT:
+				return bufferNumber > value;
+			case LE:
+				return bufferNumber <= value;
+			default:
+				return bufferNumber >= value;
+			}
+		}
+	}
+
+	static final class BindStep extends Step {
+		private final Symbol slot;
+		private final int index;
+		private final boolean negated;
+
+		BindStep(Symbol slot, int index, boolean negated) {
+			this.slot = slot;
+			this.index = index;
+			this.negated = negated;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			Symbol bufferValue = bindings.chunk.get(slot);
+			if (bufferValue == Symbol.nil)
+				return negated;
+			bindings.values[index] = bufferValue;
+			return true;
+		}
+	}
+
+	static final class VariableStep extends Step {
+		private final SlotCondition condition;
+		private final Symbol slot;
+		private final int index;
+		private final boolean negated;
+
+		VariableStep(SlotCondition condition, int index) {
+			this.condition = condition;
+			this.index = index;
+			slot = condition.getSlot();
+			negated = "-".equals(condition.getOperator());
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			Symbol bufferValue = bindings.chunk.get(slot);
+			if (bufferValue == Symbol.nil)
+				return negated;
+			return condition.compare(bufferValue, bindings.values[index]);
+		}
+	}
+
+	static final class InterpretedSlotStep extends Step {
+		private final Symbol buffer;
+		private final SlotCondition condition;
+
+		InterpretedSlotStep(Symbol buffer, SlotCondition condition) {
+			this.buffer = buffer;
+			this.condition = condition;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			return condition.match(buffer, bindings.chunk, bindings);
+		}
+	}
+
+	static final class SpecialStep extends Step {
+		private final BufferCondition condition;
+
+		SpecialStep(BufferCondition condition) {
+			this.condition = condition;
+		}
+
+		@Override
+		boolean test(Bindings bindings) {
+			return condition.match(bindings);
+		}
+	}
+
+	private static final int UNBOUND = 0, BOUND = 1, UNKNOWN = 2;
+
+	/**
+	 * Compiles a matcher for a production whose variables have been compiled
+	 * to the given indices.
+	 */
+	CompiledMatcher(Production p, Symbol[] variables, Model model) {
+		Vector<Step> v = new Vector<Step>();
+		Vector<Symbol> vFailed = new Vector<Symbol>();
+		int[] state = new int[variables.length];
+		Iterator<BufferCondition> it = p.getConditions();
+		while (it.hasNext()) {
+			BufferCondition bc = it.next();
+			if (bc.isSpecial()) {
+				v.add(new SpecialStep(bc));
+				vFailed.add(null);
+				continue;
+			}
+			Symbol buffer = bc.getBuffer();
+			int bufferIndex = (bc.getPrefix() == '=') ? indexOf(variables,
+					Symbol.get("=" + buffer)) : -1;
+			v.add(new BufferStep(model.getBuffers(), buffer, bufferIndex));
+			vFailed.add(buffer);
+			if (bufferIndex >= 0)
+				state[bufferIndex] = BOUND;
+
+			Iterator<SlotCondition> itSC = bc.getSlotConditions();
+			while (itSC.hasNext()) {
+				SlotCondition sc = itSC.next();
+				Symbol slot = sc.getSlot();
+				Symbol value = sc.getValue();
+				String operator = sc.getOperator();
+				int valueIndex = value.isVariable() ? indexOf(variables, value)
+						: -1;
+				if (slot.isVariable()) {
+					// the slot may not be bound yet, in which case the test
+					// is delayed and the value is left unbound
+					v.add(new InterpretedSlotStep(buffer, sc));
+					if (valueIndex >= 0 && state[valueIndex] == UNBOUND)
+						state[valueIndex] = UNKNOWN;
+				} else if (valueIndex < 0)
+					v.add(compileConstant(model, buffer, sc));
+				else if (state[valueIndex] == UNKNOWN)
+					v.add(new InterpretedSlotStep(buffer, sc));
+				else if (state[valueIndex] == UNBOUND) {
+					// a negated test succeeds on an empty slot without
+					// binding the variable
+					boolean negated = "-".equals(operator);
+					v.add(new BindStep(slot, valueIndex, negated));
+					state[valueIndex] = negated ? UNKNOWN : BOUND;
+				} else
+					v.add(new VariableStep(sc, valueIndex));
+				vFailed.add(sc.isConstant() ? buffer : null);
+			}
+		}
+		steps = v.toArray(new Step[v.size()]);
+		failedBuffers = vFailed.toArray(new Symbol[vFailed.size()]);
+	}
+
+	private static Step compileConstant(Model model, Symbol buffer,
+			SlotCondition sc) {
+		String operator = sc.getOperator();
+		if (operator == null)
+			return new EqualsStep(model.getDeclarative(), sc.getSlot(),
+					sc.getValue());
+		else if (operator.equals("-"))
+			return new NotEqualsStep(model.getDeclarative(), sc.getSlot(),
+					sc.getValue());
+		int op;
+		if (operator.equals("<"))
+			op = NumberStep.LT;
+		else if (operator.equals(">"))
+			op = NumberStep.GT;
+		else if (operator.equals("<="))
+			op = NumberStep.LE;
+		else if (operator.equals(">="))
+			op = NumberStep.GE;
+		else
+			return new InterpretedSlotStep(buffer, sc);
+		if (!sc.getValue().isNumber())
+			return new InterpretedSlotStep(buffer, sc);
+		return new NumberStep(sc.getSlot(), op, sc.getValue().toDouble());
+	}
+
+	private static int indexOf(Symbol[] variables, Symbol variable) {
+		for (int i = 0; i < variables.length; i++)
+			if (variables[i] == variable)
+				return i;
+		return -1;
+	}
+
+	boolean match(Bindings bindings) {
+		for (int i = 0; i < steps.length; i++)
+			if (!steps[i].test(bindings)) {
+				bindings.failedBuffer = failedBuffers[i];
+				return false;
+			}
+		return true;
+	}
+}
@@ -1,9 +1,12 @@
 package actr.model;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.Vector;
 
 /**
@@ -17,6 +20,10 @@ public class Declarative extends Module {
 	private Map<Symbol, ChunkType> chunkTypes;
 	private Map<String, Double> similarities;
 	private Vector<Chunk> finsts;
+	private Map<Symbol, Map<Symbol, TreeSet<Chunk>>> slotIndex;
+	private Map<Integer, Vector<Chunk>> contents;
+	private Map<Symbol, Map<Chunk, Integer>> references;
+	private long chunksAdded = 0;
 	// private double lastCleanup = 0;
 
 	double retrievalThreshold = 0.0;
@@ -42,10 +49,13 @@ public class Declarative extends Module {
 
 	Declarative(Model model) {
 		this.model = model;
-		chunks = new HashMap<Symbol, Chunk>();
+		chunks = new LinkedHashMap<Symbol, Chunk>();
 		chunkTypes = new HashMap<Symbol, ChunkType>();
 		similarities = new HashMap<String, Double>();
 		finsts = new Vector<Chunk>();
+		slotIndex = new HashMap<Symbol, Map<Symbol, TreeSet<Chunk>>>();
+		contents = new HashMap<Integer, Vector<Chunk>>();
+		references = new HashMap<Symbol, Map<Chunk, Integer>>();
 		// lastCleanup = 0;
 
 		if (extendedMemoryClass != null) {
@@ -86,24 +96,22 @@ public class Declarative extends Module {
 			return chunk;
 
 		if (!preventMerge) {
-			Iterator<Chunk> it = chunks.values().iterator();
-			while (it.hasNext()) {
-				Chunk existingChunk = it.next();
-				if (chunk.equals(existingChunk)) {
-					existingChunk.addUse();
-					model.getBuffers().replaceSlotValues(chunk, existingChunk);
-					return existingChunk;
-				}
+			Chunk existingChunk = findEqual(chunk);
+			if (existingChunk != null) {
+				existingChunk.addUse();
+				model.getBuffers().replaceSlotValues(chunk, existingChunk);
+				return existingChunk;
 			}
 		}
 
 		chunk.setFan(1);
 
 		if (!optimizedFan) {
-			Iterator<Chunk> it = chunks.values().iterator();
-			while (it.hasNext()) {
-				Chunk existingChunk = it.next();
-				chunk.increaseFan(chunk.appearsInSlotsOf(existingChunk));
+			Map<Chunk, Integer> referrers = references.get(chunk.getName());
+			if (referrers != null) {
+				Iterator<Integer> it = referrers.values().iterator();
+				while (it.hasNext())
+					chunk.increaseFan(it.next());
 			}
 		}
 
@@ -115,10 +123,138 @@ public class Declarative extends Module {
 		}
 
 		chunk.setCreationTime(model.getTime());
+		chunk.setMemoryOrder(++chunksAdded);
 		chunks.put(chunk.getName(), chunk);
+		indexContent(chunk);
+		Iterator<Symbol> slots = chunk.getSlotNames();
+		while (slots.hasNext()) {
+			Symbol slot = slots.next();
+			indexSlot(chunk, slot, chunk.get(slot));
+		}
 		return chunk;
 	}
 
+	/**
+	 * Checks whether a chunk's name appears in a non-<tt>isa</tt> slot of
+	 * another chunk. Chunks in memory are looked up in the reverse index of
+	 * slot references; other chunks are scanned.
+	 */
+	boolean isReferencedBy(Chunk chunk, Chunk referrer) {
+		if (chunks.get(referrer.getName()) != referrer)
+			return chunk.appearsInSlotsOf(referrer) > 0;
+		Map<Chunk, Integer> referrers = references.get(chunk.getName());
+		return referrers != null && referrers.containsKey(referrer);
+	}
+
+	Map<Chunk, Integer> getReferrers(Symbol name) {
+		return references.get(name);
+	}
+
+	/**
+	 * Finds the earliest added chunk in memory that is equal to the given
+	 * chunk, looking only at the chunks with the same content hash.
+	 */
+	private Chunk findEqual(Chunk chunk) {
+		if (chunk.slotCount() == 0)
+			return null;
+		Vector<Chunk> v = contents.get(chunk.contentHash());
+		if (v == null)
+			return null;
+		Chunk first = null;
+		for (int i = 0; i < v.size(); i++) {
+			Chunk existingChunk = v.elementAt(i);
+			if (chunk.equals(existingChunk)
+					&& (first == null || existingChunk.getMemoryOrder() < first
+							.getMemoryOrder()))
+				first = existingChunk;
+		}
+		return first;
+	}
+
+	void indexContent(Chunk chunk) {
+		if (chunk.slotCount() == 0)
+			return;
+		Vector<Chunk> v = contents.get(chunk.contentHash());
+		if (v == null) {
+			v = new Vector<Chunk>();
+			contents.put(chunk.contentHash(), v);
+		}
+		v.add(chunk);
+	}
+
+	void unindexContent(Chunk chunk) {
+		if (chunk.slotCount() == 0)
+			return;
+		Vector<Chunk> v = contents.get(chunk.contentHash());
+		if (v != null) {
+			v.remove(chunk);
+			if (v.isEmpty())
+				contents.remove(chunk.contentHash());
+		}
+	}
+
+	/**
+	 * Files a chunk in declarative memory under one of its slot values in the
+	 * inverted index used by retrieval. The chunks under each value are kept
+	 * in the order in which they were added to memory. Values of slots other
+	 * than <tt>isa</tt> are also counted as references to the chunk of that
+	 * name, for computing fans and associative strengths.
+	 */
+	void indexSlot(Chunk chunk, Symbol slot, Symbol value) {
+		if (slot != Symbol.isa) {
+			Map<Chunk, Integer> referrers = references.get(value);
+			if (referrers == null) {
+				referrers = new HashMap<Chunk, Integer>();
+				references.put(value, referrers);
+			}
+			Integer count = referrers.get(chunk);
+			referrers.put(chunk, (count == null) ? 1 : count + 1);
+		}
+		Map<Symbol, TreeSet<Chunk>> values = slotIndex.get(slot);
+		if (values == null) {
+			values = new HashMap<Symbol, TreeSet<Chunk>>();
+			slotIndex.put(slot, values);
+		}
+		TreeSet<Chunk> postings = values.get(value);
+		if (postings == null) {
+			postings = new TreeSet<Chunk>(memoryOrder);
+			values.put(value, postings);
+		}
+		postings.add(chunk);
+	}
+
+	void unindexSlot(Chunk chunk, Symbol slot, Symbol value) {
+		if (slot != Symbol.isa) {
+			Map<Chunk, Integer> referrers = references.get(value);
+			Integer count = (referrers != null) ? referrers.get(chunk) : null;
+			if (count != null) {
+				if (count > 1)
+					referrers.put(chunk, count - 1);
+				else {
+					referrers.remove(chunk);
+					if (referrers.isEmpty())
+						references.remove(value);
+				}
+			}
+		}
+		Map<Symbol, TreeSet<Chunk>> values = slotIndex.get(slot);
+		TreeSet<Chunk> postings = (values != null) ? values.get(value) : null;
+		if (postings != null) {
+			postings.remove(chunk);
+			if (postings.isEmpty())
+				values.remove(value);
+		}
+	}
+
+	static final Comparator<Chunk> memoryOrder = new Comparator<Chunk>() {
+		@Override
+		public int compare(Chunk c1, Chunk c2) {
+			if (c1.getMemoryOrder() == c2.getMemoryOrder())
+				return 0;
+			return (c1.getMemoryOrder() < c2.getMemoryOrder()) ? -1 : 1;
+		}
+	};
+
 	/**
 	 * Gets the full chunk for the given name.
 	 * 
@@ -148,39 +284,50 @@ public class Declarative extends Module {
 		return chunks.values().iterator();
 	}
 
+	/**
+	 * Gets the postings for the chunks whose slot value matches the given
+	 * value, either directly or as a subtype of the value's chunk type.
+	 */
+	Vector<TreeSet<Chunk>> getPostings(Symbol slot, Symbol value) {
+		Vector<TreeSet<Chunk>> postings = new Vector<TreeSet<Chunk>>();
+		Map<Symbol, TreeSet<Chunk>> values = slotIndex.get(slot);
+		if (values == null)
+			return postings;
+		TreeSet<Chunk> direct = values.get(value);
+		if (direct != null)
+			postings.add(direct);
+		ChunkType type = getChunkType(value);
+		if (type != null) {
+			Iterator<ChunkType> it = chunkTypes.values().iterator();
+			while (it.hasNext()) {
+				ChunkType subtype = it.next();
+				if (subtype != type && subtype.isa(type)) {
+					TreeSet<Chunk> sub = values.get(subtype.getName());
+					if (sub != null)
+						postings.add(sub);
+				}
+			}
+		}
+		return postings;
+	}
+
+	Collection<Chunk> getChunkCollection() {
+		return chunks.values();
+	}
+
 	Chunk findRetrieval(Chunk request) {
-		HashSet<Chunk> matches = new HashSet<Chunk>();
+		Vector<Chunk> matches = new Vector<Chunk>();
 		if (activationTrace)
 			model.output("*** finding retrieval for request " + request);
 
-		Iterator<Chunk> it = chunks.values().iterator();
+		RetrievalQuery query = new RetrievalQuery(request, this);
+		if (query.isReset() && !chunks.isEmpty())
+			finsts.clear();
+
+		Iterator<Chunk> it = query.getCandidates().iterator();
 		while (it.hasNext()) {
 			Chunk potential = it.next();
-			boolean match = true;
-			Iterator<Symbol> slots = request.getSlotNames();
-			while (slots.hasNext()) {
-				Symbol slot = slots.next();
-				Symbol value = request.get(slot);
-				if (slot == Symbol.recentlyRetrieved) {
-					if (value == Symbol.get("reset"))
-						finsts.clear();
-					else if (potential.isRetrieved() != value.toBoolean()) {
-						match = false;
-						continue;
-					}
-				} else {
-					Symbol potval = potential.get(slot);
-					if (!partialMatching
-							|| (slot == Symbol.isa || slot.getString()
-									.charAt(0) == ':'))
-						if (potval == null || (potval != request.get(slot)))
-							if (!model.getDeclarative().isa(potval, value)) {
-								match = false;
-								continue;
-							}
-				}
-			}
-			if (match)
+			if (query.matches(potential))
 				matches.add(potential);
 		}
 
@@ -203,11 +350,17 @@ public class Declarative extends Module {
 				model.output("*** no matching chunks");
 			return chunk;
 		} else {
+			// the trace reports each association, so it pulls the spreading
+			// activation for each chunk in turn
+			SpreadingActivation spreading = null;
+			if (spreadingActivation && !activationTrace)
+				spreading = new SpreadingActivation(model);
 			it = matches.iterator();
 			Chunk chunk = it.next();
 			if (activationTrace)
 				model.output("*** testing " + chunk.getName() + " " + chunk);
-			double highestActivation = chunk.computeActivation(request);
+			double highestActivation = chunk.computeActivation(request,
+					spreading);
 			if (activationTrace)
 				model.output("*** activation " + chunk.getName() + " = "
 						+ String.format("%.3f", highestActivation));
@@ -216,7 +369,7 @@ public class Declarative extends Module {
 				chunk = it.next();
 				if (activationTrace)
 					model.output("*** testing " + chunk.getName() + " " + chunk);
-				double act = chunk.computeActivation(request);
+				double act = chunk.computeActivation(request, spreading);
 				if (activationTrace)
 					model.output("*** activation " + chunk.getName() + " = "
 							+ String.format("%.3f", act));
@@ -242,7 +395,8 @@ public class Declarative extends Module {
 	void update() {
 		for (int i = 0; i < finsts.size(); i++) {
 			Chunk c = finsts.elementAt(i);
-			if (c.getRetrievalTime() < model.getTime() - declarativeFinstSpan) {
+			if (Utilities.toClock(c.getRetrievalTime()) < model.getClock()
+					- Utilities.toClock(declarativeFinstSpan)) {
 				c.setRetrieved(false);
 				// XXX c.setRetrievalTime (0); // why was this here??
 				finsts.removeElementAt(i);
@@ -264,8 +418,12 @@ public class Declarative extends Module {
 				model.getBuffers().setSlot(Symbol.retrievalState,
 						Symbol.buffer, Symbol.requested);
 				model.addEvent(new Event(model.getTime() + retrievalTime,
-						"declarative", "retrieved-chunk ["
-								+ retrieval.getName() + "]") {
+						Symbol.declarative, "retrieved-chunk") {
+					@Override
+					protected String describe() {
+						return "retrieved-chunk [" + retrieval.getName() + "]";
+					}
+
 					@Override
 					public void action() {
 						retrieval.setRetrieved(true);
@@ -287,7 +445,7 @@ public class Declarative extends Module {
 				model.getBuffers().setSlot(Symbol.retrievalState, Symbol.state,
 						Symbol.busy);
 				model.addEvent(new Event(model.getTime() + retrievalTime,
-						"declarative", "retrieval-failure") {
+						Symbol.declarative, "retrieval-failure") {
 					@Override
 					public void action() {
 						model.getBuffers().setSlot(Symbol.retrievalState,
@@ -2,16 +2,71 @@ package actr.model;
 
 /**
  * The abstract class for a model event.
+ * <p>
+ * Each event carries its module both as a string and as an interned
+ * {@link Symbol}, so that the event queue and the model's trace filtering can
+ * compare modules with <tt>==</tt> rather than string comparisons.
+ * <p>
+ * Descriptions that are expensive to build (e.g., those that include chunk or
+ * production names) can be deferred: the event is created with only the first
+ * word of its description, and the subclass overrides {@link #describe()} to
+ * build the full string. The full description is then built only when it is
+ * needed for the trace or for <tt>toString()</tt>.
+ * <p>
+ * Internally, event times are kept on an integer clock of microseconds, so
+ * that ordering is exact and sums of latencies do not drift; the
+ * <tt>time</tt> field and <tt>getTime()</tt> give the same time in seconds.
+ * <p>
+ * Events that recur, such as periodic updates, can be rescheduled with
+ * {@link Model#rescheduleEvent(Event, double)} instead of creating a new event
+ * for each occurrence.
  * 
  * @author Dario Salvucci
  */
 public abstract class Event implements Comparable<Event> {
+	/**
+	 * The time of the event in seconds, a read-only copy of the internal
+	 * clock. Assigning this field does not change when the event occurs; use
+	 * {@link Model#rescheduleEvent(Event, double)} instead, which calls
+	 * <tt>rearm()</tt> (or <tt>setTime()</tt> within the package).
+	 * 
+	 * @deprecated use {@link #getTime()} to read the time
+	 */
+	@Deprecated
 	public double time;
 	public String module;
 	public String description;
 
+	private long clock;
+	private Symbol moduleSymbol;
+	private String key;
+	private String initialDescription;
+	private boolean described = false;
 	private long uniqueID;
 
+	/**
+	 * Creates a new event.
+	 * 
+	 * @param time
+	 *            the time at which the event should occur
+	 * @param module
+	 *            the module symbol related to this event (e.g.,
+	 *            <tt>Symbol.task</tt>)
+	 * @param description
+	 *            a description of the event for output traces, or only its
+	 *            first word if the subclass overrides {@link #describe()}
+	 */
+	public Event(double time, Symbol module, String description) {
+		setTime(time);
+		this.module = module.getString();
+		this.description = description;
+		initialDescription = description;
+		moduleSymbol = module;
+		int space = description.indexOf(' ');
+		key = (space < 0) ? description : description.substring(0, space);
+		uniqueID = Utilities.getUniqueID();
+	}
+
 	/**
 	 * Creates a new event.
 	 * 
@@ -23,10 +78,7 @@ public abstract class Event implements Comparable<Event> {
 	 *            a description of the event for output traces
 	 */
 	public Event(double time, String module, String description) {
-		this.time = time;
-		this.module = module;
-		this.description = description;
-		uniqueID = Utilities.getUniqueID();
+		this(time, Symbol.get(module), description);
 	}
 
 	/**
@@ -38,6 +90,24 @@ public abstract class Event implements Comparable<Event> {
 		return time;
 	}
 
+	long getClock() {
+		return clock;
+	}
+
+	void setTime(double time) {
+		clock = Utilities.toClock(time);
+		this.time = Utilities.toSeconds(clock);
+	}
+
+	void rearm(double time) {
+		setTime(time);
+		if (described) {
+			description = initialDescription;
+			described = false;
+		}
+		uniqueID = Utilities.getUniqueID();
+	}
+
 	/**
 	 * Gets the module associated with this event.
 	 * 
@@ -48,14 +118,43 @@ public abstract class Event implements Comparable<Event> {
 	}
 
 	/**
-	 * Gets the description of the event.
+	 * Gets the interned module symbol associated with this event.
+	 * 
+	 * @return the module symbol
+	 */
+	public Symbol getModuleSymbol() {
+		return moduleSymbol;
+	}
+
+	/**
+	 * Gets the description of the event, building it first if it was deferred.
 	 * 
 	 * @return the description string
 	 */
 	public String getDescription() {
+		if (!described) {
+			description = describe();
+			described = true;
+		}
 		return description;
 	}
 
+	/**
+	 * Builds the full description of the event. By default this is the
+	 * description given at creation; subclasses that defer their descriptions
+	 * override this method, which is called at most once and only when the
+	 * description is needed.
+	 * 
+	 * @return the full description string
+	 */
+	protected String describe() {
+		return description;
+	}
+
+	String getKey() {
+		return key;
+	}
+
 	/**
 	 * Compares two events, primarily with respect to their start times.
 	 * 
@@ -65,13 +164,13 @@ public abstract class Event implements Comparable<Event> {
 	 */
 	@Override
 	public int compareTo(Event e2) {
-		if (time < e2.time)
+		if (clock < e2.clock)
 			return -1;
-		else if (time > e2.time)
+		else if (clock > e2.clock)
 			return +1;
-		else if (module.equals("task") && !e2.module.equals("task"))
+		else if (moduleSymbol == Symbol.task && e2.moduleSymbol != Symbol.task)
 			return -1;
-		else if (!module.equals("task") && e2.module.equals("task"))
+		else if (moduleSymbol != Symbol.task && e2.moduleSymbol == Symbol.task)
 			return +1;
 		else if (uniqueID < e2.uniqueID)
 			return -1;
@@ -96,6 +195,6 @@ public abstract class Event implements Comparable<Event> {
 	 */
 	@Override
 	public String toString() {
-		return "[event: " + time + " " + module + "," + description + "]";
+		return "[event: " + time + " " + module + "," + getDescription() + "]";
 	}
 }
@@ -0,0 +1,26 @@
+package actr.model;
+
+import java.util.Iterator;
+
+/**
+ * The time-ordered queue underlying the model's events. Events are ordered as
+ * defined by {@link Event#compareTo(Event)}: by time, then with task events
+ * first, then by creation order.
+ * 
+ * @author Dario Salvucci
+ */
+interface EventQueue {
+	boolean add(Event event);
+
+	boolean remove(Object event);
+
+	boolean isEmpty();
+
+	int size();
+
+	Event first();
+
+	Event pollFirst();
+
+	Iterator<Event> iterator();
+}
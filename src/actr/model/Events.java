@@ -1,20 +1,115 @@
 package actr.model;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.Vector;
 
 /**
  * A queue of upcoming events sorted by time.
+ * <p>
+ * In addition to the time-sorted queue, events are indexed by their module and
+ * by the first word of their description, so that the module and prefix
+ * queries (<tt>scheduled</tt>, <tt>changeTime</tt>, and
+ * <tt>removeModuleEvents</tt>) only visit the events of the given module
+ * rather than the entire queue. The first word is the event's precomputed key,
+ * so deferred descriptions are not built for indexing. Modules are keyed by
+ * their interned {@link Symbol}, so lookups hash and compare by identity.
+ * <p>
+ * The time-sorted queue is a balanced tree by default; a calendar queue with
+ * amortized constant-time operations can be selected with
+ * <tt>(sgp :calendar-queue t)</tt>. Both produce the same event order.
  * 
  * @author Dario Salvucci
  */
 public class Events {
-	private TreeSet<Event> events;
+	private EventQueue events;
+	private Map<Symbol, ModuleEvents> modules;
+
+	private class ModuleEvents {
+		TreeSet<Event> all = new TreeSet<Event>();
+		TreeMap<String, TreeSet<Event>> keys = new TreeMap<String, TreeSet<Event>>();
+
+		void add(Event e) {
+			all.add(e);
+			String key = e.getKey();
+			TreeSet<Event> keyed = keys.get(key);
+			if (keyed == null) {
+				keyed = new TreeSet<Event>();
+				keys.put(key, keyed);
+			}
+			keyed.add(e);
+		}
+
+		void remove(Event e) {
+			all.remove(e);
+			String key = e.getKey();
+			TreeSet<Event> keyed = keys.get(key);
+			if (keyed != null) {
+				keyed.remove(e);
+				if (keyed.isEmpty())
+					keys.remove(key);
+			}
+		}
+
+		Vector<Event> matching(String prefix) {
+			Vector<Event> v = new Vector<Event>();
+			if (prefix.equals("")) {
+				v.addAll(all);
+				return v;
+			}
+			int space = prefix.indexOf(' ');
+			if (space < 0) {
+				// without a space, the prefix can only match within the first
+				// word, so all words starting with the prefix are matches
+				SortedMap<String, TreeSet<Event>> range = keys.subMap(prefix,
+						prefix + Character.MAX_VALUE);
+				Iterator<TreeSet<Event>> it = range.values().iterator();
+				while (it.hasNext())
+					v.addAll(it.next());
+			} else {
+				TreeSet<Event> keyed = keys.get(prefix.substring(0, space));
+				if (keyed != null) {
+					Iterator<Event> it = keyed.iterator();
+					while (it.hasNext()) {
+						Event e = it.next();
+						if (e.getDescription().startsWith(prefix))
+							v.add(e);
+					}
+				}
+			}
+			return v;
+		}
+
+		Event first(String prefix) {
+			if (prefix.equals(""))
+				return all.isEmpty() ? null : all.first();
+			Event first = null;
+			Iterator<Event> it = matching(prefix).iterator();
+			while (it.hasNext()) {
+				Event e = it.next();
+				if (first == null || e.compareTo(first) < 0)
+					first = e;
+			}
+			return first;
+		}
+	}
 
 	Events() {
-		events = new TreeSet<Event>();
+		events = new TreeEventQueue();
+		modules = new HashMap<Symbol, ModuleEvents>();
+	}
+
+	void setCalendarQueue(boolean calendar) {
+		EventQueue queue = calendar ? new CalendarEventQueue()
+				: new TreeEventQueue();
+		Iterator<Event> it = events.iterator();
+		while (it.hasNext())
+			queue.add(it.next());
+		events = queue;
 	}
 
 	/**
@@ -27,9 +122,15 @@ public class Events {
 		return !events.isEmpty();
 	}
 
+	int size() {
+		return events.size();
+	}
+
 	Event next() {
-		Event e = events.first();
-		events.remove(e);
+		Event e = events.pollFirst();
+		ModuleEvents me = modules.get(e.getModuleSymbol());
+		if (me != null)
+			me.remove(e);
 		return e;
 	}
 
@@ -40,11 +141,22 @@ public class Events {
 	 */
 	public double nextTime() {
 		Event e = events.first();
-		return e.time;
+		return e.getTime();
+	}
+
+	long nextClock() {
+		return events.first().getClock();
 	}
 
 	void add(Event event) {
-		events.add(event);
+		if (!events.add(event))
+			return;
+		ModuleEvents me = modules.get(event.getModuleSymbol());
+		if (me == null) {
+			me = new ModuleEvents();
+			modules.put(event.getModuleSymbol(), me);
+		}
+		me.add(event);
 	}
 
 	/**
@@ -56,7 +168,20 @@ public class Events {
 	 *         <tt>false</tt> otherwise
 	 */
 	public boolean scheduled(String module) {
-		return scheduled(module, "");
+		return scheduled(Symbol.get(module));
+	}
+
+	/**
+	 * Checks whether there are any events scheduled for the given module.
+	 * 
+	 * @param module
+	 *            the module symbol
+	 * @return <tt>true</tt> if there are events scheduled for the module, or
+	 *         <tt>false</tt> otherwise
+	 */
+	public boolean scheduled(Symbol module) {
+		ModuleEvents me = modules.get(module);
+		return (me != null && !me.all.isEmpty());
 	}
 
 	/**
@@ -71,44 +196,56 @@ public class Events {
 	 *         the given prefix, or <tt>false</tt> otherwise
 	 */
 	public boolean scheduled(String module, String prefix) {
-		Iterator<Event> it = events.iterator();
-		while (it.hasNext()) {
-			Event e = it.next();
-			if (e.module.equals(module) && e.description.startsWith(prefix))
-				return true;
+		ModuleEvents me = modules.get(Symbol.get(module));
+		return (me != null && me.first(prefix) != null);
+	}
+
+	void remove(Event event) {
+		if (events.remove(event)) {
+			ModuleEvents me = modules.get(event.getModuleSymbol());
+			if (me != null)
+				me.remove(event);
 		}
-		return false;
 	}
 
 	void changeTime(String module, String prefix, double newTime) {
-		Iterator<Event> it = events.iterator();
-		while (it.hasNext()) {
-			Event e = it.next();
-			if (e.module.equals(module) && e.description.startsWith(prefix)) {
-				events.remove(e);
-				e.time = newTime;
-				// remove and add to re-sort the events
-				events.add(e);
-				return;
-			}
+		ModuleEvents me = modules.get(Symbol.get(module));
+		if (me == null)
+			return;
+		Event e = me.first(prefix);
+		if (e != null) {
+			events.remove(e);
+			me.remove(e);
+			e.setTime(newTime);
+			// remove and add to re-sort the events
+			add(e);
 		}
 	}
 
 	void removeModuleEvents(String module, String prefix) {
-		Set<Event> moduleEvents = new HashSet<Event>();
-		Iterator<Event> it = events.iterator();
+		removeModuleEvents(Symbol.get(module), prefix);
+	}
+
+	void removeModuleEvents(Symbol module, String prefix) {
+		ModuleEvents me = modules.get(module);
+		if (me == null)
+			return;
+		Iterator<Event> it = me.matching(prefix).iterator();
 		while (it.hasNext()) {
 			Event e = it.next();
-			if (e.module.equals(module) && e.description.startsWith(prefix))
-				moduleEvents.add(e);
+			events.remove(e);
+			me.remove(e);
 		}
-		events.removeAll(moduleEvents);
 	}
 
 	void removeModuleEvents(String module) {
 		removeModuleEvents(module, "");
 	}
 
+	void removeModuleEvents(Symbol module) {
+		removeModuleEvents(module, "");
+	}
+
 	/**
 	 * Gets a string representation of the scheduled events.
 	 * 
@@ -0,0 +1,82 @@
+package actr.model;
+
+import java.util.Random;
+
+/**
+ * A benchmark comparing the tree and calendar event queues on long runs of
+ * ACT-R-like scheduling, in which each event schedules another at one of the
+ * architecture's usual fixed latencies. The two queues must also produce the
+ * same order of events, which is checked by comparing a checksum of the run.
+ * <p>
+ * Run with <tt>ant benchmark</tt> or
+ * <tt>java -cp bin actr.model.EventsBenchmark [events] [pending]</tt>.
+ * 
+ * @author Dario Salvucci
+ */
+class EventsBenchmark {
+	private static final double[] latencies = { .050, .050, .050, .085, .185,
+			.200, .250, 1.0 };
+
+	private static class BenchmarkEvent extends Event {
+		int id;
+
+		BenchmarkEvent(double time, Symbol module, int id) {
+			super(time, module, "benchmark");
+			this.id = id;
+		}
+
+		@Override
+		public void action() {
+		}
+	}
+
+	private static long run(boolean calendar, int total, int pending) {
+		Events events = new Events();
+		events.setCalendarQueue(calendar);
+		Random random = new Random(1);
+		int id = 0;
+		for (; id < pending; id++)
+			events.add(new BenchmarkEvent(random.nextInt(20) * .050,
+					(id % 4 == 0) ? Symbol.task : Symbol.procedural, id));
+		long checksum = 0;
+		for (int i = 0; i < total; i++) {
+			BenchmarkEvent e = (BenchmarkEvent) events.next();
+			checksum = 31 * checksum + e.id;
+			double latency = latencies[random.nextInt(latencies.length)];
+			events.add(new BenchmarkEvent(e.getTime() + latency,
+					(id % 4 == 0) ? Symbol.task : Symbol.procedural, id));
+			id++;
+			if (i % 100 == 0)
+				events.removeModuleEvents(Symbol.task, "benchmark");
+			while (events.size() < pending) {
+				events.add(new BenchmarkEvent(e.getTime() + latency,
+						Symbol.motor, id));
+				id++;
+			}
+		}
+		return checksum;
+	}
+
+	private static void report(String name, boolean calendar, int total,
+			int pending, long expected) {
+		long start = System.nanoTime();
+		long checksum = run(calendar, total, pending);
+		double ms = (System.nanoTime() - start) / 1e6;
+		System.out.println(String.format("%-9s %8d pending  %10.1f ms  %s", name,
+				pending, ms, (checksum == expected) ? "same order"
+						: "DIFFERENT ORDER"));
+	}
+
+	public static void main(String[] args) {
+		int total = (args.length > 0) ? Integer.valueOf(args[0]) : 2000000;
+		int[] sizes = (args.length > 1) ? new int[] { Integer.valueOf(args[1]) }
+				: new int[] { 10, 100, 1000, 10000 };
+		for (int pending : sizes) {
+			long expected = run(false, total, pending);
+			// warm up both queues before timing
+			run(true, total / 10, pending);
+			report("tree", false, total, pending, expected);
+			report("calendar", true, total, pending, expected);
+		}
+	}
+}
@@ -32,7 +32,12 @@ public class Imaginal extends Module {
 			model.getBuffers().setSlot(Symbol.imaginalState, Symbol.buffer,
 					Symbol.requested);
 			model.addEvent(new Event(model.getTime() + imaginalDelay,
-					"imaginal", "set-buffer [" + chunk.getName() + "]") {
+					Symbol.imaginal, "set-buffer") {
+				@Override
+				protected String describe() {
+					return "set-buffer [" + chunk.getName() + "]";
+				}
+
 				@Override
 				public void action() {
 					model.getBuffers().set(Symbol.imaginal, chunk);
@@ -44,6 +44,13 @@ public class Instantiation {
 		return newi;
 	}
 
+	Instantiation copy(double time, double u) {
+		Instantiation newi = new Instantiation(p, time, u);
+		newi.mapping.putAll(mapping);
+		newi.threadID = threadID;
+		return newi;
+	}
+
 	void set(Symbol variable, Symbol chunk) {
 		mapping.put(variable, chunk);
 	}
@@ -69,6 +76,10 @@ public class Instantiation {
 		return mapping.get(variable);
 	}
 
+	void setUtility(double u) {
+		this.u = u;
+	}
+
 	void setThreadID(int threadID) {
 		this.threadID = threadID;
 	}
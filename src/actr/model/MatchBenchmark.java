@@ -0,0 +1,108 @@
+package actr.model;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * A benchmark comparing the interpreted and compiled production matchers.
+ * Each model is run to a fixed simulated time with the same random seed in
+ * both modes, and the two runs must fire the same productions, which is
+ * checked by comparing a checksum of the productions' firing counts. With no
+ * model files given, the benchmark generates a counting model with many
+ * distractor productions that test the goal and retrieval buffers.
+ * <p>
+ * Run with <tt>ant match-benchmark</tt> or
+ * <tt>java -cp bin actr.model.MatchBenchmark [time] [model files]</tt>.
+ * 
+ * @author Dario Salvucci
+ */
+class MatchBenchmark {
+	private static String syntheticModel(int distractors) {
+		StringBuilder s = new StringBuilder();
+		s.append("(sgp :v nil :esc t :lf .05)\n");
+		s.append("(chunk-type count-order first second)\n");
+		s.append("(chunk-type count-from count end step)\n");
+		s.append("(add-dm\n");
+		for (int i = 0; i < 100; i++)
+			s.append(" (n" + i + " isa count-order first " + i + " second "
+					+ ((i + 1) % 100) + ")\n");
+		s.append(" (first-goal isa count-from count 0 end 1000 step 1))\n");
+		s.append("(goal-focus first-goal)\n");
+		s.append("(p start\n =goal> isa count-from count =num - step nil\n"
+				+ " ?retrieval> buffer empty state free\n==>\n"
+				+ " +retrieval> isa count-order first =num)\n");
+		s.append("(p increment\n =goal> isa count-from count =num1 end =end\n"
+				+ " =retrieval> isa count-order first =num1 second =num2\n"
+				+ "==>\n =goal> count =num2\n"
+				+ " +retrieval> isa count-order first =num2)\n");
+		for (int i = 0; i < distractors; i++) {
+			switch (i % 4) {
+			case 0:
+				s.append("(p d" + i + "\n =goal> isa count-from count " + i
+						+ " step " + (i + 2) + "\n==>\n -goal>)\n");
+				break;
+			case 1:
+				s.append("(p d" + i + "\n =goal> isa count-from count =num"
+						+ " end =num\n==>\n -goal>)\n");
+				break;
+			case 2:
+				s.append("(p d" + i + "\n =goal> isa count-from count =num"
+						+ " step " + (i + 2) + "\n =retrieval> isa count-order"
+						+ " first =num second =next\n==>\n -goal>)\n");
+				break;
+			default:
+				s.append("(p d" + i + "\n =goal> isa count-from count =num"
+						+ " > end " + i + "\n =retrieval> isa count-order"
+						+ " < first -1\n==>\n -goal>)\n");
+				break;
+			}
+		}
+		return s.toString();
+	}
+
+	private static Model compile(File file, String text) {
+		return (file != null) ? Model.compile(file, null) : Model.compile(text,
+				null);
+	}
+
+	private static long run(File file, String text, boolean compiled,
+			double time) {
+		Utilities.random = new Random(1);
+		Model model = compile(file, text);
+		model.setParameter(":v", "nil");
+		model.setParameter(":compile-matchers", compiled ? "t" : "nil");
+		model.runUntil(time);
+		long checksum = 0;
+		Iterator<Production> it = model.getProcedural().getProductions();
+		while (it.hasNext())
+			checksum += it.next().getTimesFired();
+		return 31 * checksum + (long) (1000 * model.getTime());
+	}
+
+	private static void report(String name, File file, String text,
+			boolean compiled, double time, long expected) {
+		long start = System.nanoTime();
+		long checksum = run(file, text, compiled, time);
+		double ms = (System.nanoTime() - start) / 1e6;
+		System.out.println(String.format("%-24s %-11s %10.1f ms  %s", name,
+				compiled ? "compiled" : "interpreted", ms,
+				(checksum == expected) ? "same firings" : "DIFFERENT FIRINGS"));
+	}
+
+	public static void main(String[] args) {
+		double time = (args.length > 0) ? Double.valueOf(args[0]) : 200;
+		int n = Math.max(1, args.length - 1);
+		for (int i = 0; i < n; i++) {
+			File file = (args.length > 1) ? new File(args[i + 1]) : null;
+			String text = (file == null) ? syntheticModel(400) : null;
+			String name = (file != null) ? file.getName() : "synthetic";
+			long expected = run(file, text, false, time);
+			// warm up both matchers before timing
+			run(file, text, true, time);
+			run(file, text, false, time);
+			report(name, file, text, false, time, expected);
+			report(name, file, text, true, time, expected);
+		}
+	}
+}
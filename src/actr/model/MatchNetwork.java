@@ -0,0 +1,146 @@
+package actr.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Discrimination network that incrementally tracks which productions could
+ * match the current buffer contents, in the style of the TREAT algorithm.
+ * <p>
+ * Each buffer condition contributes a node requiring the buffer to be full,
+ * and each slot condition with a constant slot and value (and an equality or
+ * <tt>-</tt> test) contributes a node for that test. Nodes are shared by all
+ * productions with the same test, so a buffer change re-evaluates each test
+ * only once. Each production counts its failing nodes, and only productions
+ * with no failing nodes are candidates for full instantiation; the variable
+ * bindings, numeric comparisons and special conditions are still tested by
+ * <tt>Production.instantiate</tt>, so the conflict set is the same as with
+ * full matching.
+ * 
+ * @author Dario Salvucci
+ */
+class MatchNetwork {
+	private Model model;
+	private Map<Symbol, Vector<Node>> bufferNodes;
+	private Map<String, Node> nodes;
+	private Map<Production, Entry> entries;
+
+	class Node {
+		Symbol buffer;
+		SlotCondition test;
+		String key;
+		boolean satisfied;
+		Vector<Entry> entries = new Vector<Entry>();
+
+		boolean evaluate() {
+			Chunk chunk = model.getBuffers().get(buffer);
+			if (chunk == null)
+				return false;
+			return (test == null) || test.test(buffer, chunk, null);
+		}
+	}
+
+	class Entry {
+		Vector<Node> nodes = new Vector<Node>();
+		int failing = 0;
+	}
+
+	MatchNetwork(Model model) {
+		this.model = model;
+		bufferNodes = new HashMap<Symbol, Vector<Node>>();
+		nodes = new HashMap<String, Node>();
+		entries = new HashMap<Production, Entry>();
+	}
+
+	static boolean isConstantTest(SlotCondition sc) {
+		String operator = sc.getOperator();
+		return !sc.getSlot().isVariable() && !sc.getValue().isVariable()
+				&& (operator == null || operator.equals("-"));
+	}
+
+	void add(Production p) {
+		Entry entry = new Entry();
+		Iterator<BufferCondition> it = p.getConditions();
+		while (it.hasNext()) {
+			BufferCondition bc = it.next();
+			if (bc.isSpecial())
+				continue;
+			addNode(entry, bc.getBuffer(), null);
+			Iterator<SlotCondition> itSC = bc.getSlotConditions();
+			while (itSC.hasNext()) {
+				SlotCondition sc = itSC.next();
+				if (isConstantTest(sc))
+					addNode(entry, bc.getBuffer(), sc);
+			}
+		}
+		entries.put(p, entry);
+	}
+
+	private void addNode(Entry entry, Symbol buffer, SlotCondition test) {
+		String key = buffer.getString();
+		if (test != null)
+			key += " " + ((test.getOperator() == null) ? "" : test.getOperator())
+					+ " " + test.getSlot() + " " + test.getValue();
+		Node node = nodes.get(key);
+		if (node == null) {
+			node = new Node();
+			node.buffer = buffer;
+			node.test = test;
+			node.key = key;
+			node.satisfied = node.evaluate();
+			nodes.put(key, node);
+			Vector<Node> v = bufferNodes.get(buffer);
+			if (v == null) {
+				v = new Vector<Node>();
+				bufferNodes.put(buffer, v);
+			}
+			v.add(node);
+		}
+		if (entry.nodes.contains(node))
+			return;
+		entry.nodes.add(node);
+		node.entries.add(entry);
+		if (!node.satisfied)
+			entry.failing++;
+	}
+
+	void remove(Production p) {
+		Entry entry = entries.remove(p);
+		if (entry == null)
+			return;
+		for (int i = 0; i < entry.nodes.size(); i++) {
+			Node node = entry.nodes.elementAt(i);
+			node.entries.remove(entry);
+			if (node.entries.isEmpty()) {
+				nodes.remove(node.key);
+				bufferNodes.get(node.buffer).remove(node);
+			}
+		}
+	}
+
+	void update(Set<Symbol> changed) {
+		Iterator<Symbol> it = changed.iterator();
+		while (it.hasNext()) {
+			Vector<Node> v = bufferNodes.get(it.next());
+			if (v == null)
+				continue;
+			for (int i = 0; i < v.size(); i++) {
+				Node node = v.elementAt(i);
+				boolean satisfied = node.evaluate();
+				if (satisfied == node.satisfied)
+					continue;
+				node.satisfied = satisfied;
+				for (int j = 0; j < node.entries.size(); j++)
+					node.entries.elementAt(j).failing += satisfied ? -1 : 1;
+			}
+		}
+	}
+
+	boolean isCandidate(Production p) {
+		Entry entry = entries.get(p);
+		return (entry == null) || entry.failing == 0;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.text.ParseException;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
 
 import actr.env.Frame;
 import actr.task.Task;
@@ -27,7 +28,14 @@ public class Model {
 	private Events events;
 	private Task task;
 	private double time;
-	private boolean stop;
+	private long clock;
+	private volatile boolean stop;
+	private boolean started = false;
+	private volatile Thread runThread;
+	private long realTimeAnchorNanos;
+	private long realTimeAnchorClock;
+	private long realTimeLag;
+	private long maxRealTimeLag;
 	private boolean taskUpdated;
 	private int currentThreadID = 1;
 	private Vector<ParseError> errors;
@@ -39,6 +47,15 @@ public class Model {
 	boolean runUntilStop = false;
 	boolean bufferStuffing = true;
 
+	// When batching is on (:batch-events t), all events with the same time
+	// are run before a single conflict resolution, instead of one conflict
+	// resolution after each event. Productions therefore only see the state
+	// after the whole batch, and fewer calls to the utility noise change the
+	// random sequence, so traces can differ from the unbatched order: a
+	// production that would have matched between two same-time events (and
+	// its "**" trace line) may not appear, or may be replaced by another.
+	boolean batchSameTimeEvents = false;
+
 	private Model(Frame frame) {
 		this.frame = frame;
 		declarative = new Declarative(this);
@@ -53,6 +70,7 @@ public class Model {
 		buffers = new Buffers(this);
 		events = new Events();
 		time = 0;
+		clock = 0;
 		task = new Task();
 		taskUpdated = false;
 		errors = new Vector<ParseError>();
@@ -268,6 +286,10 @@ public class Model {
 		return time;
 	}
 
+	long getClock() {
+		return clock;
+	}
+
 	/**
 	 * Returns true if the model is running in real time.
 	 * 
@@ -341,6 +363,25 @@ public class Model {
 		events.add(event);
 	}
 
+	/**
+	 * Reschedules an event to occur at the given time, re-using the event
+	 * rather than creating a new one; if the event is still in the queue, it is
+	 * moved to the new time. The event is ordered among events at the same time
+	 * as if it had just been created. This is useful for events that recur,
+	 * such as periodic updates, which can reschedule themselves from their own
+	 * <tt>action()</tt> method.
+	 * 
+	 * @param event
+	 *            the event
+	 * @param time
+	 *            the new time of the event
+	 */
+	public void rescheduleEvent(Event event, double time) {
+		events.remove(event);
+		event.rearm(time);
+		events.add(event);
+	}
+
 	/**
 	 * Checks whether there is currently an event scheduled for a particular
 	 * module.
@@ -394,6 +435,10 @@ public class Model {
 		events.removeModuleEvents(module);
 	}
 
+	void removeEvents(Symbol module) {
+		events.removeModuleEvents(module);
+	}
+
 	/**
 	 * Removes all events for the given module with a description that starts
 	 * with the given prefix.
@@ -424,12 +469,91 @@ public class Model {
 	 *            <tt>false</tt> to resume from the current state
 	 */
 	public void run(boolean reset) {
+		run(reset, Double.POSITIVE_INFINITY, Long.MAX_VALUE,
+				Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Runs the model until the given simulated time, starting the model if it
+	 * has not yet been run and resuming it otherwise. If the run stops at the
+	 * time limit, the model's time is advanced to the limit.
+	 * 
+	 * @param time
+	 *            the time limit in seconds from the start of simulation
+	 * @return the status of the run
+	 */
+	public RunStatus runUntil(double time) {
+		return run(!started, time, Long.MAX_VALUE, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Runs the model for at most the given number of events, starting the
+	 * model if it has not yet been run and resuming it otherwise.
+	 * 
+	 * @param maxEvents
+	 *            the maximum number of events to process
+	 * @return the status of the run
+	 */
+	public RunStatus runEvents(long maxEvents) {
+		return run(!started, Double.POSITIVE_INFINITY, maxEvents,
+				Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Runs the model for at most the given wall-clock time, starting the model
+	 * if it has not yet been run and resuming it otherwise.
+	 * 
+	 * @param seconds
+	 *            the wall-clock budget in seconds
+	 * @return the status of the run
+	 */
+	public RunStatus runWallClock(double seconds) {
+		return run(!started, Double.POSITIVE_INFINITY, Long.MAX_VALUE, seconds);
+	}
+
+	/**
+	 * Runs a model simulation until there are no more events on the event
+	 * queue, <tt>stop()</tt> is called, or one of the given limits is reached.
+	 * Unlimited runs can pass <tt>Double.POSITIVE_INFINITY</tt> or
+	 * <tt>Long.MAX_VALUE</tt> for the limits. With the limits, a model that
+	 * never stops by itself (e.g., with <tt>:rus</tt> or an endless loop of
+	 * productions) costs a fixed budget rather than running forever.
+	 * 
+	 * @param reset
+	 *            <tt>true</tt> to start the model from time zero, or
+	 *            <tt>false</tt> to resume from the current state
+	 * @param timeLimit
+	 *            the simulated time, in seconds, beyond which no events are
+	 *            processed
+	 * @param eventLimit
+	 *            the maximum number of events to process
+	 * @param wallClockLimit
+	 *            the maximum wall-clock time of the run in seconds
+	 * @return the status of the run
+	 */
+	public RunStatus run(boolean reset, double timeLimit, long eventLimit,
+			double wallClockLimit) {
 		stop = false;
+		runThread = Thread.currentThread();
+		realTimeAnchorNanos = System.nanoTime();
+		realTimeAnchorClock = clock;
+		realTimeLag = 0;
+		maxRealTimeLag = 0;
 		taskUpdated = false;
+		boolean conflictPending = false;
+
+		long clockLimit = (timeLimit == Double.POSITIVE_INFINITY)
+				? Long.MAX_VALUE : Utilities.toClock(timeLimit);
+		long wallClockDeadline = (wallClockLimit == Double.POSITIVE_INFINITY)
+				? Long.MAX_VALUE : realTimeAnchorNanos
+						+ Math.round(wallClockLimit * 1e9);
+		long count = 0;
+		RunStatus.Reason reason = null;
 
 		if (reset) {
+			started = true;
 			task.start();
-			addEvent(new Event(0.0, "procedural", "start") {
+			addEvent(new Event(0.0, Symbol.procedural, "start") {
 				@Override
 				public void action() {
 					procedural.findInstantiations(buffers);
@@ -439,46 +563,108 @@ public class Model {
 			});
 		}
 
-		while (!stop && (events.hasMoreEvents() || runUntilStop)) {
-			Event event = events.next();
-			if (realTime && (event.getTime() > time))
-				incrementalSleep(Math.round(1000
-						* (event.getTime() - time)
-						* (1.0 / (realTimeMultiplier == 0 ? 1
-								: realTimeMultiplier))));
-			time = event.getTime();
-
-			taskUpdated = false;
-			if (verboseTrace && !event.getModule().equals("task")
-					&& !event.getModule().equals("bold")
-					&& !event.getModule().equals(""))
-				output(event.getModule(), event.getDescription());
-			event.action();
-
-			if (!event.getModule().equals("procedural")
-					&& !event.getModule().equals("bold")
-					&& (taskUpdated || !event.getModule().equals("task"))
-					&& !events.scheduled("procedural"))
-				procedural.findInstantiations(buffers);
+		while (reason == null) {
+			// an interrupt of the run thread stops the run like stop(), and
+			// the interrupt status is kept for the caller
+			if (stop || Thread.currentThread().isInterrupted())
+				reason = RunStatus.Reason.STOPPED;
+			else if (count >= eventLimit)
+				reason = RunStatus.Reason.EVENT_LIMIT;
+			else if (wallClockDeadline != Long.MAX_VALUE
+					&& System.nanoTime() >= wallClockDeadline)
+				reason = RunStatus.Reason.WALL_CLOCK_LIMIT;
+			else if (events.hasMoreEvents() ? events.nextClock() > clockLimit
+					: (runUntilStop && clockLimit != Long.MAX_VALUE)) {
+				if (clockLimit > clock) {
+					clock = clockLimit;
+					time = Utilities.toSeconds(clock);
+				}
+				reason = RunStatus.Reason.TIME_LIMIT;
+			} else if (!events.hasMoreEvents()) {
+				if (!runUntilStop)
+					reason = RunStatus.Reason.DONE;
+				else
+					// wait for stop() or a limit, without spinning
+					LockSupport.parkNanos(this, 1000000);
+			} else {
+				Event event = events.next();
+				count++;
+				if (realTime)
+					pace(event.getClock());
+				clock = event.getClock();
+				time = event.getTime();
+
+				taskUpdated = false;
+				Symbol module = event.getModuleSymbol();
+				if (verboseTrace && module != Symbol.task
+						&& module != Symbol.bold && module != Symbol.untraced)
+					output(event.getModule(), event.getDescription());
+				event.action();
+
+				if (module != Symbol.procedural && module != Symbol.bold
+						&& (taskUpdated || module != Symbol.task))
+					conflictPending = true;
+				if (conflictPending
+						&& (!batchSameTimeEvents || stop || count >= eventLimit
+								|| !events.hasMoreEvents()
+								|| events.nextClock() > clock)) {
+					conflictPending = false;
+					if (!events.scheduled(Symbol.procedural))
+						procedural.findInstantiations(buffers);
+				}
+			}
 		}
+		if (conflictPending && !events.scheduled(Symbol.procedural))
+			procedural.findInstantiations(buffers);
 		if (verboseTrace) {
 			if (events.hasMoreEvents())
 				output("------", "stop");
 			else
 				output("------", "done");
 		}
+		return new RunStatus(reason, count, time);
+	}
+
+	// Waits until the wall-clock deadline of an event at the given clock,
+	// measured from the wall-clock time at which the run started (or resumed),
+	// so that sleeping errors do not accumulate across events. When the model
+	// has fallen behind the deadline, the event runs immediately and the lag
+	// is recorded; subsequent events run without waiting until the model has
+	// caught up with the wall clock. An interrupt ends the wait early, since
+	// parking returns at once while the thread is interrupted.
+	void pace(long eventClock) {
+		double multiplier = (realTimeMultiplier == 0) ? 1 : realTimeMultiplier;
+		long deadline = realTimeAnchorNanos
+				+ Math.round((eventClock - realTimeAnchorClock)
+						* (1e9 / Utilities.clockTicksPerSecond) / multiplier);
+		long remaining = deadline - System.nanoTime();
+		while (!stop && remaining > 0
+				&& !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(this, remaining);
+			remaining = deadline - System.nanoTime();
+		}
+		realTimeLag = Math.max(0, -remaining);
+		maxRealTimeLag = Math.max(maxRealTimeLag, realTimeLag);
 	}
 
-	void incrementalSleep(long ms) {
-		int increment = 100;
-		while (!stop && (ms > 0)) {
-			try {
-				Thread.sleep(Math.min(ms, increment));
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			ms -= increment;
-		}
+	/**
+	 * Gets how far the model is behind the wall clock when running in real
+	 * time, as of the most recent event.
+	 * 
+	 * @return the lag in seconds, or 0 if the last event ran on time
+	 */
+	public double getRealTimeLag() {
+		return realTimeLag / 1e9;
+	}
+
+	/**
+	 * Gets the largest lag behind the wall clock during the current or most
+	 * recent run in real time.
+	 * 
+	 * @return the maximum lag in seconds
+	 */
+	public double getMaxRealTimeLag() {
+		return maxRealTimeLag / 1e9;
 	}
 
 	/**
@@ -487,6 +673,9 @@ public class Model {
 	 */
 	public void stop() {
 		stop = true;
+		Thread thread = runThread;
+		if (thread != null)
+			LockSupport.unpark(thread);
 	}
 
 	/**
@@ -529,6 +718,10 @@ public class Model {
 					: 0;
 		} else if (parameter.equals(":rus"))
 			runUntilStop = !value.equals("nil");
+		else if (parameter.equals(":batch-events"))
+			batchSameTimeEvents = !value.equals("nil");
+		else if (parameter.equals(":calendar-queue"))
+			events.setCalendarQueue(!value.equals("nil"));
 
 		else if (parameter.equals(":ul"))
 			procedural.utilityLearning = !value.equals("nil");
@@ -545,6 +738,22 @@ public class Model {
 					.valueOf(value);
 		else if (parameter.equals(":nu"))
 			procedural.productionCompilationNewUtility = Double.valueOf(value);
+		else if (parameter.equals(":match-network"))
+			procedural.incrementalMatching = !value.equals("nil");
+		else if (parameter.equals(":compile-matchers"))
+			procedural.compiledMatching = !value.equals("nil");
+		else if (parameter.equals(":parallel-matching")) {
+			procedural.parallelMatching = !value.equals("nil");
+			if (!value.equals("nil") && !value.equals("t"))
+				procedural.parallelMatchingThreshold = Integer.valueOf(value);
+		} else if (parameter.equals(":compilation-cache"))
+			procedural.setCompilationCacheSize(value.equals("nil") ? 0
+					: Integer.valueOf(value));
+		else if (parameter.equals(":max-learned-productions"))
+			procedural.maxLearnedProductions = value.equals("nil") ? 0
+					: Integer.valueOf(value);
+		else if (parameter.equals(":learned-eviction"))
+			procedural.evictByUtility = value.equals("utility");
 		else if (parameter.equals(":cst"))
 			procedural.conflictSetTrace = !value.equals("nil");
 		else if (parameter.equals(":pct"))
@@ -109,13 +109,15 @@ public class Motor extends Module {
 				Symbol.keyboard);
 	}
 
-	private class IncrementalMove {
+	// one event per movement, rescheduled for each of its incremental steps
+	private class IncrementalMove extends Event {
 		int startx, starty, endx, endy;
 		double startTime, endTime;
 		int fracIndex;
 
 		IncrementalMove(double execTime, int startx, int starty, int endx,
 				int endy) {
+			super(model.getTime(), Symbol.task, "update");
 			this.startx = startx;
 			this.starty = starty;
 			this.endx = endx;
@@ -124,6 +126,20 @@ public class Motor extends Module {
 			endTime = startTime + execTime;
 			fracIndex = 0;
 		}
+
+		@Override
+		public void action() {
+			double moveFrac = cumulative[fracIndex];
+			mx = (int) Math.round(((1.0 - moveFrac) * startx)
+					+ (moveFrac * endx));
+			my = (int) Math.round(((1.0 - moveFrac) * starty)
+					+ (moveFrac * endy));
+			model.getTask().moveMouse(mx, my);
+			if (fracIndex < cumulative.length - 1) {
+				fracIndex++;
+				incrementalMove(this);
+			}
+		}
 	}
 
 	private int countFeaturesToPrepare(Chunk request) {
@@ -172,25 +188,10 @@ public class Motor extends Module {
 	private final double cumulative[] = { 0.000, 0.063, 0.269, 0.506, 0.697,
 			0.826, 0.905, 0.950, 0.975, 0.987, 1.0 };
 
-	private void incrementalMove(final IncrementalMove im) {
-		final double timeFrac = 1.0 * im.fracIndex / cumulative.length;
-		final double moveFrac = cumulative[im.fracIndex];
-		double eventTime = ((1.0 - timeFrac) * im.startTime)
-				+ (timeFrac * im.endTime);
-		model.addEvent(new Event(eventTime, "task", "update") {
-			@Override
-			public void action() {
-				mx = (int) Math.round(((1.0 - moveFrac) * im.startx)
-						+ (moveFrac * im.endx));
-				my = (int) Math.round(((1.0 - moveFrac) * im.starty)
-						+ (moveFrac * im.endy));
-				model.getTask().moveMouse(mx, my);
-				if (im.fracIndex < cumulative.length - 1) {
-					im.fracIndex++;
-					incrementalMove(im);
-				}
-			}
-		});
+	private void incrementalMove(IncrementalMove im) {
+		double timeFrac = 1.0 * im.fracIndex / cumulative.length;
+		model.rescheduleEvent(im, ((1.0 - timeFrac) * im.startTime)
+				+ (timeFrac * im.endTime));
 	}
 
 	private double prepareMovement(double time, Chunk request) {
@@ -201,7 +202,7 @@ public class Motor extends Module {
 				Symbol.busy);
 		model.getBuffers().setSlot(Symbol.manualState, Symbol.state,
 				Symbol.busy);
-		model.addEvent(new Event(time, "motor", "preparation-complete") {
+		model.addEvent(new Event(time, Symbol.motor, "preparation-complete") {
 			@Override
 			public void action() {
 				model.getBuffers().setSlot(Symbol.manualState,
@@ -215,7 +216,7 @@ public class Motor extends Module {
 
 	private double initiateMovement(double time) {
 		time += movementInitiationTime;
-		model.addEvent(new Event(time, "motor", "initiation-complete") {
+		model.addEvent(new Event(time, Symbol.motor, "initiation-complete") {
 			@Override
 			public void action() {
 				model.getBuffers().setSlot(Symbol.manualState,
@@ -228,7 +229,7 @@ public class Motor extends Module {
 	}
 
 	private void finishMovement(double time) {
-		model.addEvent(new Event(time, "motor", "finish-movement") {
+		model.addEvent(new Event(time, Symbol.motor, "finish-movement") {
 			@Override
 			public void action() {
 				if (queuedMovements.size() == 0) {
@@ -271,7 +272,7 @@ public class Motor extends Module {
 			model.getBuffers().setSlot(Symbol.manualState, Symbol.state,
 					Symbol.busy);
 			model.addEvent(new Event(model.getTime() + featurePrepTime,
-					"motor", "change state last none prep free") {
+					Symbol.motor, "change state last none prep free") {
 				@Override
 				public void action() {
 					lastMovement = null;
@@ -379,7 +380,7 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, featRequest);
 			eventTime = initiateMovement(eventTime);
 			if (model.realTime)
-				model.addEvent(new Event(eventTime, "task", "none") {
+				model.addEvent(new Event(eventTime, Symbol.task, "none") {
 					@Override
 					public void action() {
 						incrementalMove(new IncrementalMove(moveTime, mx, my,
@@ -387,7 +388,12 @@ public class Motor extends Module {
 					}
 				});
 			eventTime += moveTime;
-			model.addEvent(new Event(eventTime, "motor", "move cursor " + locpt) {
+			model.addEvent(new Event(eventTime, Symbol.motor, "move") {
+				@Override
+				protected String describe() {
+					return "move cursor " + locpt;
+				}
+
 				@Override
 				public void action() {
 					model.getTask().moveMouse(locpt.x, locpt.y);
@@ -411,7 +417,7 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, featRequest);
 			eventTime = initiateMovement(eventTime);
 			eventTime += keyClosureTime;
-			model.addEvent(new Event(eventTime, "motor", "output mouse click") {
+			model.addEvent(new Event(eventTime, Symbol.motor, "output mouse click") {
 				@Override
 				public void action() {
 					model.getTask().clickMouse();
@@ -446,7 +452,12 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, featRequest);
 			eventTime = initiateMovement(eventTime);
 			eventTime += Math.max(burstTime, moveTime);
-			model.addEvent(new Event(eventTime, "motor", "move hand " + toKey) {
+			model.addEvent(new Event(eventTime, Symbol.motor, "move") {
+				@Override
+				protected String describe() {
+					return "move hand " + toKey;
+				}
+
 				@Override
 				public void action() {
 					if (hand == Symbol.right)
@@ -474,7 +485,12 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, request);
 			eventTime = initiateMovement(eventTime);
 			eventTime += keyClosureTime;
-			model.addEvent(new Event(eventTime, "motor", "output key " + key) {
+			model.addEvent(new Event(eventTime, Symbol.motor, "output") {
+				@Override
+				protected String describe() {
+					return "output key " + key;
+				}
+
 				@Override
 				public void action() {
 					if (key.equals("mouse"))
@@ -508,7 +524,12 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, request);
 			eventTime = initiateMovement(eventTime);
 			eventTime += Math.max(burstTime, fittsTime);
-			model.addEvent(new Event(eventTime, "motor", "output key " + key) {
+			model.addEvent(new Event(eventTime, Symbol.motor, "output") {
+				@Override
+				protected String describe() {
+					return "output key " + key;
+				}
+
 				@Override
 				public void action() {
 					model.getTask().typeKey(convertToChar(key));
@@ -539,7 +560,12 @@ public class Motor extends Module {
 			eventTime = prepareMovement(eventTime, request);
 			eventTime = initiateMovement(eventTime);
 			eventTime += Math.max(burstTime, moveTime);
-			model.addEvent(new Event(eventTime, "motor", "output key " + key) {
+			model.addEvent(new Event(eventTime, Symbol.motor, "output") {
+				@Override
+				protected String describe() {
+					return "output key " + key;
+				}
+
 				@Override
 				public void action() {
 					model.getTask().typeKey(convertToChar(key));
@@ -0,0 +1,88 @@
+package actr.model;
+
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Matches a batch of productions concurrently against the current buffers.
+ * <p>
+ * The buffers and declarative memory are not changed while the productions
+ * are matched, so each production can be tested independently. The batch is
+ * split among a shared pool of worker threads, each with its own
+ * <tt>Bindings</tt> scratch state. The instantiations are returned without
+ * utility noise, which the caller adds in production order so that runs
+ * draw the same random numbers as with serial matching. Productions with
+ * special <tt>!</tt> conditions are never matched here, since their
+ * conditions may run arbitrary code.
+ * 
+ * @author Dario Salvucci
+ */
+class ParallelMatcher {
+	private static ExecutorService executor = null;
+	private static int threads = Runtime.getRuntime().availableProcessors();
+
+	private Bindings[] bindings;
+
+	ParallelMatcher() {
+		bindings = new Bindings[threads];
+		for (int i = 0; i < threads; i++)
+			bindings[i] = new Bindings();
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "actr-matcher");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		return executor;
+	}
+
+	/**
+	 * Matches the first <tt>count</tt> productions, storing each one's
+	 * instantiation (or <tt>null</tt>) at the same index of the results, and
+	 * for a failed match the buffer of the failing test as described in
+	 * <tt>Bindings</tt>.
+	 */
+	void match(final Buffers buffers, final Production[] productions,
+			final Instantiation[] results, final Symbol[] failedBuffers,
+			final int count) {
+		Vector<Callable<Object>> tasks = new Vector<Callable<Object>>();
+		for (int i = 0; i < threads && i < count; i++) {
+			final int first = i;
+			final Bindings taskBindings = bindings[i];
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (int j = first; j < count; j += threads) {
+						results[j] = productions[j].matchWithoutNoise(buffers,
+								taskBindings);
+						failedBuffers[j] = taskBindings.failedBuffer;
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			Vector<Future<Object>> futures = new Vector<Future<Object>>(
+					getExecutor().invokeAll(tasks));
+			for (int i = 0; i < futures.size(); i++)
+				futures.elementAt(i).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
@@ -1,9 +1,11 @@
 package actr.model;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -14,9 +16,23 @@ import java.util.Vector;
 public class Procedural extends Module {
 	private Model model;
 	private Map<Symbol, Production> productions;
+	private Map<Integer, Vector<Production>> structures;
 	private Vector<Instantiation> rewardFirings;
 	private Instantiation lastFiredInst;
 	private Map<Integer, Instantiation> lastFiredOnThread;
+	private ProductionIndex index;
+	private HashSet<Production> candidates;
+	private HashSet<Production> goalCandidates;
+	private MatchNetwork network;
+	private Map<Production, Instantiation> lastMatches;
+	private Map<Production, Symbol> lastFailures;
+	private Bindings bindings;
+	private ParallelMatcher parallelMatcher;
+	private Production[] pending;
+	private Instantiation[] pendingResults;
+	private Symbol[] pendingFailures;
+	private CompilationCache compilationCache;
+	private Vector<Production> learned;
 
 	boolean utilityLearning = false;
 	double utilityNoiseS = 0;
@@ -27,6 +43,12 @@ public class Procedural extends Module {
 	double productionCompilationNewUtility = 0;
 	boolean productionCompilationAddUtilities = false;
 	boolean productionCompilationThreaded = true;
+	int maxLearnedProductions = 0;
+	boolean evictByUtility = false;
+	boolean incrementalMatching = false;
+	boolean compiledMatching = false;
+	boolean parallelMatching = false;
+	int parallelMatchingThreshold = 64;
 
 	boolean conflictSetTrace = false;
 	boolean whyNotTrace = false;
@@ -36,13 +58,89 @@ public class Procedural extends Module {
 	Procedural(Model model) {
 		this.model = model;
 		productions = new HashMap<Symbol, Production>();
+		structures = new HashMap<Integer, Vector<Production>>();
 		rewardFirings = new Vector<Instantiation>();
 		lastFiredInst = null;
 		lastFiredOnThread = new HashMap<Integer, Instantiation>();
+		index = new ProductionIndex(model);
+		candidates = new HashSet<Production>();
+		goalCandidates = new HashSet<Production>();
+		lastMatches = new HashMap<Production, Instantiation>();
+		lastFailures = new HashMap<Production, Symbol>();
+		bindings = new Bindings();
+		pending = new Production[0];
+		pendingResults = new Instantiation[0];
+		pendingFailures = new Symbol[0];
+		compilationCache = new CompilationCache(model, 1000);
+		learned = new Vector<Production>();
 	}
 
 	void add(Production p) {
-		productions.put(p.getName(), p);
+		Production old = productions.put(p.getName(), p);
+		if (old != null)
+			unindex(old);
+		if (p.isLearned())
+			learned.add(p);
+		Vector<Production> v = structures.get(p.structuralHash());
+		if (v == null) {
+			v = new Vector<Production>();
+			structures.put(p.structuralHash(), v);
+		}
+		v.add(p);
+		index.add(p);
+		p.compileVariables();
+		if (network != null)
+			network.add(p);
+	}
+
+	/**
+	 * Removes a production from procedural memory and from the match indexes.
+	 */
+	void remove(Production p) {
+		if (productions.get(p.getName()) != p)
+			return;
+		productions.remove(p.getName());
+		unindex(p);
+	}
+
+	private void unindex(Production p) {
+		structures.get(p.structuralHash()).remove(p);
+		index.remove(p);
+		lastMatches.remove(p);
+		lastFailures.remove(p);
+		if (network != null)
+			network.remove(p);
+		if (p.isLearned())
+			learned.remove(p);
+	}
+
+	/**
+	 * Removes learned productions, other than the given one just learned,
+	 * until there are no more than the maximum number. The production removed
+	 * is the one with the lowest utility or, by default, the one least
+	 * recently fired or learned again. Productions from the model file are
+	 * never removed.
+	 */
+	private void evictLearned(Production newp) {
+		while (maxLearnedProductions > 0
+				&& learned.size() > maxLearnedProductions) {
+			Production evict = null;
+			for (int i = 0; i < learned.size(); i++) {
+				Production p = learned.elementAt(i);
+				if (p == newp)
+					continue;
+				if (evict == null
+						|| (evictByUtility ? p.getUtility() < evict.getUtility()
+								: p.getLastUsedTime() < evict.getLastUsedTime()))
+					evict = p;
+			}
+			if (evict == null)
+				return;
+			if (productionCompilationTrace)
+				model.output("*** (pct) forgetting " + evict.getName() + " [u="
+						+ String.format("%.3f", evict.getUtility()) + "]");
+			remove(evict);
+		}
 	}
 
 	/**
@@ -75,15 +173,39 @@ public class Procedural extends Module {
 	}
 
 	Production exists(Production p) {
-		Iterator<Production> it = productions.values().iterator();
-		while (it.hasNext()) {
-			Production ip = it.next();
-			if (ip.equals(p))
-				return ip;
-		}
+		Vector<Production> v = structures.get(p.structuralHash());
+		if (v == null)
+			return null;
+		for (int i = 0; i < v.size(); i++)
+			if (v.elementAt(i).equals(p))
+				return v.elementAt(i);
 		return null;
 	}
 
+	void setCompilationCacheSize(int size) {
+		compilationCache.setCapacity(size);
+	}
+
+	/**
+	 * Gets the number of production compilations answered from the
+	 * compilation cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public int getCompilationCacheHits() {
+		return compilationCache.getHits();
+	}
+
+	/**
+	 * Gets the number of production compilations that were not in the
+	 * compilation cache and were computed in full.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public int getCompilationCacheMisses() {
+		return compilationCache.getMisses();
+	}
+
 	/**
 	 * Gets the last production that fired in the simulation.
 	 * 
@@ -93,35 +215,156 @@ public class Procedural extends Module {
 		return lastFiredInst.getProduction();
 	}
 
+	/**
+	 * Adds the instantiations of the productions that match the buffers to the
+	 * given set. When <tt>nextGoal</tt> is <tt>true</tt>, the only change
+	 * since the last call is the goal chunk tried next, so the candidates that
+	 * do not depend on the goal chunk are kept from the last call.
+	 */
+	private void matchProductions(Buffers buffers, HashSet<Instantiation> set,
+			boolean nextGoal) {
+		// the why-not trace reports on every production, so it needs full
+		// matching
+		boolean prune = !whyNotTrace;
+		boolean useNetwork = incrementalMatching && prune;
+		Map<Symbol, Set<Symbol>> changes = buffers.getChanges();
+		if (prune) {
+			if (!nextGoal) {
+				candidates.clear();
+				index.findCandidates(buffers, candidates, false);
+			}
+			goalCandidates.clear();
+			index.findCandidates(buffers, goalCandidates, true);
+		} else
+			lastFailures.clear();
+		if (useNetwork && network == null) {
+			network = new MatchNetwork(model);
+			Iterator<Production> it = productions.values().iterator();
+			while (it.hasNext())
+				network.add(it.next());
+		} else if (network != null)
+			network.update(changes.keySet());
+		int matched = (parallelMatching && prune) ? matchInParallel(buffers,
+				changes, useNetwork) : 0;
+
+		int next = 0;
+		Iterator<Production> it = productions.values().iterator();
+		while (it.hasNext()) {
+			Production p = it.next();
+			Instantiation inst;
+			if (!prune)
+				inst = p.instantiate(buffers);
+			else if (!isCandidate(p, useNetwork)) {
+				inst = null;
+				lastFailures.remove(p);
+			} else if (!p.isAffectedBy(changes) && lastMatches.containsKey(p)) {
+				// nothing the production tests has changed since its last
+				// match, so only the time and utility noise are new
+				Instantiation last = lastMatches.get(p);
+				if (last != null)
+					set.add(last.copy(model.getTime(), p.getUtility()
+							+ Utilities.getNoise(utilityNoiseS)));
+				continue;
+			} else if (stillFails(p, changes))
+				inst = null;
+			else if (next < matched && pending[next] == p) {
+				// matched in parallel; the noise is drawn here, in the same
+				// order as with serial matching
+				inst = pendingResults[next];
+				pendingResults[next] = null;
+				if (inst != null)
+					inst.setUtility(p.getUtility()
+							+ Utilities.getNoise(utilityNoiseS));
+				setLastFailure(p, inst, pendingFailures[next++]);
+			} else {
+				inst = p.match(buffers, bindings);
+				setLastFailure(p, inst, bindings.failedBuffer);
+			}
+			if (inst != null)
+				set.add(inst);
+			lastMatches.put(p, inst);
+		}
+		buffers.clearChanges();
+	}
+
+	private boolean isCandidate(Production p, boolean useNetwork) {
+		return (candidates.contains(p) || goalCandidates.contains(p))
+				&& (!useNetwork || network.isCandidate(p));
+	}
+
+	/**
+	 * Checks whether the production's last match failed on a test of a single
+	 * buffer that does not depend on variable bindings, and that buffer has
+	 * not changed since. This lets productions that fail on a buffer other
+	 * than the goal skip matching when only the goal changes, as when the
+	 * goals of threaded cognition are tried in turn.
+	 */
+	private boolean stillFails(Production p, Map<Symbol, Set<Symbol>> changes) {
+		Symbol buffer = lastFailures.get(p);
+		return buffer != null && !changes.containsKey(buffer);
+	}
+
+	private void setLastFailure(Production p, Instantiation inst,
+			Symbol failedBuffer) {
+		if (inst == null && failedBuffer != null)
+			lastFailures.put(p, failedBuffer);
+		else
+			lastFailures.remove(p);
+	}
+
+	/**
+	 * Matches the productions that need a full match, in the order in which
+	 * <tt>matchProductions</tt> visits them, if there are at least as many as
+	 * the parallel matching threshold. Productions with special conditions
+	 * are left to be matched serially.
+	 * 
+	 * @return the number of productions matched
+	 */
+	private int matchInParallel(Buffers buffers,
+			Map<Symbol, Set<Symbol>> changes, boolean useNetwork) {
+		int count = 0;
+		Iterator<Production> it = productions.values().iterator();
+		while (it.hasNext()) {
+			Production p = it.next();
+			if (!isCandidate(p, useNetwork)
+					|| (!p.isAffectedBy(changes) && lastMatches.containsKey(p))
+					|| stillFails(p, changes) || p.hasSpecialConditions())
+				continue;
+			if (count == pending.length) {
+				pending = Arrays.copyOf(pending, Math.max(16, 2 * count));
+				pendingResults = new Instantiation[pending.length];
+				pendingFailures = new Symbol[pending.length];
+			}
+			p.prepareMatch();
+			pending[count++] = p;
+		}
+		if (count < parallelMatchingThreshold)
+			return 0;
+		if (parallelMatcher == null)
+			parallelMatcher = new ParallelMatcher();
+		parallelMatcher.match(buffers, pending, pendingResults,
+				pendingFailures, count);
+		return count;
+	}
+
 	void findInstantiations(final Buffers buffers) {
 		// if (model.verboseTrace) model.output ("procedural",
 		// "conflict-resolution");
 		buffers.removeDecayedChunks();
 
 		HashSet<Instantiation> set = new HashSet<Instantiation>();
-		buffers.sortGoals();
-
-		if (buffers.numGoals() == 0) {
-			Iterator<Production> it = productions.values().iterator();
-			while (it.hasNext()) {
-				Production p = it.next();
-				Instantiation inst = p.instantiate(buffers);
-				if (inst != null)
-					set.add(inst);
-			}
-		} else {
-			for (int i = 0; set.isEmpty() && i < buffers.numGoals(); i++) {
-				buffers.tryGoal(i);
+		if (buffers.numGoals() == 0)
+			matchProductions(buffers, set, false);
+		else {
+			Iterator<Chunk> itGoals = buffers.getGoals();
+			boolean nextGoal = false;
+			while (set.isEmpty() && itGoals.hasNext()) {
+				buffers.tryGoal(itGoals.next());
 				if (threadedCognitionTrace)
 					model.output("*** (tct) trying goal "
 							+ buffers.get(Symbol.goal));
-				Iterator<Production> it = productions.values().iterator();
-				while (it.hasNext()) {
-					Production p = it.next();
-					Instantiation inst = p.instantiate(buffers);
-					if (inst != null)
-						set.add(inst);
-				}
+				matchProductions(buffers, set, nextGoal);
+				nextGoal = true;
 			}
 		}
 
@@ -155,10 +398,15 @@ public class Procedural extends Module {
 						+ finalInst);
 
 			if (finalInst.getProduction().isBreakPoint()) {
-				model.addEvent(new Event(model.getTime() + .049, "procedural",
-						"about to fire "
-								+ finalInst.getProduction().getName()
-										.getString().toUpperCase()) {
+				model.addEvent(new Event(model.getTime() + .049, Symbol.procedural,
+						"about") {
+					@Override
+					protected String describe() {
+						return "about to fire "
+								+ finalInst.getProduction().getName().getString()
+										.toUpperCase();
+					}
+
 					@Override
 					public void action() {
 						model.output("------", "break");
@@ -167,18 +415,23 @@ public class Procedural extends Module {
 				});
 			}
 
-			String extra = "";
-			if (buffers.numGoals() > 1) {
-				Chunk goal = buffers.get(Symbol.goal);
-				extra = " ["
-						+ ((goal != null) ? goal.getName().getString() : "nil")
-						+ "]";
-			}
+			final boolean multipleGoals = (buffers.numGoals() > 1);
+			final Chunk goal = buffers.get(Symbol.goal);
 
-			model.addEvent(new Event(model.getTime() + .050, "procedural",
-					"** "
+			model.addEvent(new Event(model.getTime() + .050, Symbol.procedural,
+					"**") {
+				@Override
+				protected String describe() {
+					String s = "** "
 							+ finalInst.getProduction().getName().getString()
-									.toUpperCase() + " **" + extra) {
+									.toUpperCase() + " **";
+					if (multipleGoals)
+						s += " ["
+								+ ((goal != null) ? goal.getName().getString()
+										: "nil") + "]";
+					return s;
+				}
+
 				@Override
 				public void action() {
 					fire(finalInst, buffers);
@@ -202,8 +455,7 @@ public class Procedural extends Module {
 				if (productionCompilationTrace)
 					model.output("*** (pct) no compilation: too much time between firings");
 			} else if (lastFired != null) {
-				Production newp = new Compilation(lastFired, inst, model)
-						.compile();
+				Production newp = compilationCache.compile(lastFired, inst);
 
 				if (newp != null) {
 					Production oldp = exists(newp);
@@ -222,12 +474,15 @@ public class Procedural extends Module {
 											.getUtility()));
 						}
 
+						oldp.setLastUsedTime(model.getTime());
 						if (productionCompilationTrace)
 							model.output("*** (pct) strengthening "
 									+ oldp.getName() + " [u="
 									+ String.format("%.3f", oldp.getUtility())
 									+ "]");
 					} else {
+						newp.setLearned(true);
+						newp.setLastUsedTime(model.getTime());
 						model.getProcedural().add(newp);
 						if (productionCompilationTrace) {
 							model.output("\n*** (pct)\n");
@@ -240,6 +495,7 @@ public class Procedural extends Module {
 							// model.output
 							// ("*** (pct) new production:\n"+newp);
 						}
+						evictLearned(newp);
 					}
 				} else {
 					if (productionCompilationTrace)
@@ -1,6 +1,9 @@
 package actr.model;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -19,6 +22,10 @@ public class Production {
 	private double reward = 0;
 	private boolean breakPoint = false;
 	private int timesFired = 0;
+	private boolean learned = false;
+	private double lastUsedTime = 0;
+	private Symbol[] variables;
+	private CompiledMatcher matcher;
 
 	Production(Symbol name, Model model) {
 		this.name = name;
@@ -29,7 +36,11 @@ public class Production {
 	}
 
 	Production copy() {
-		Production p = new Production(Symbol.getUnique(name.getString()), model);
+		return copy(Symbol.getUnique(name.getString()));
+	}
+
+	Production copy(Symbol newName) {
+		Production p = new Production(newName, model);
 		for (int i = 0; i < conditions.size(); i++)
 			p.conditions.add(conditions.elementAt(i).copy());
 		for (int i = 0; i < actions.size(); i++)
@@ -59,8 +70,24 @@ public class Production {
 		return true;
 	}
 
+	/**
+	 * Gets a hash code of the production's conditions and actions that is
+	 * consistent with <tt>equals</tt>: equal productions have the same code.
+	 * 
+	 * @return the hash code
+	 */
+	public int structuralHash() {
+		int h = 0;
+		for (int i = 0; i < conditions.size(); i++)
+			h = 31 * h + conditions.elementAt(i).structuralHash();
+		for (int i = 0; i < actions.size(); i++)
+			h = 31 * h + actions.elementAt(i).structuralHash();
+		return h;
+	}
+
 	void addBufferCondition(BufferCondition bc) {
 		conditions.add(bc);
+		variables = null;
 	}
 
 	void addBufferAction(BufferAction ac) {
@@ -93,6 +120,28 @@ public class Production {
 		u = x;
 	}
 
+	/**
+	 * Checks whether this production was learned by production compilation,
+	 * rather than defined in the model.
+	 * 
+	 * @return <tt>true</tt> if the production was learned
+	 */
+	public boolean isLearned() {
+		return learned;
+	}
+
+	void setLearned(boolean b) {
+		learned = b;
+	}
+
+	double getLastUsedTime() {
+		return lastUsedTime;
+	}
+
+	void setLastUsedTime(double time) {
+		lastUsedTime = time;
+	}
+
 	/**
 	 * Checks whether this production has an associated reward.
 	 * 
@@ -207,12 +256,18 @@ public class Production {
 		return getBufferAction(prefix, buffer) != null;
 	}
 
-	boolean hasSpecials() {
+	boolean hasSpecialConditions() {
 		for (int i = 0; i < conditions.size(); i++) {
 			BufferCondition bc = conditions.elementAt(i);
 			if (bc.isSpecial())
 				return true;
 		}
+		return false;
+	}
+
+	boolean hasSpecials() {
+		if (hasSpecialConditions())
+			return true;
 		for (int i = 0; i < actions.size(); i++) {
 			BufferAction ba = actions.elementAt(i);
 			if (ba.isDirect() || ba.isSpecial())
@@ -221,6 +276,18 @@ public class Production {
 		return false;
 	}
 
+	boolean isAffectedBy(Map<Symbol, Set<Symbol>> changes) {
+		for (int i = 0; i < conditions.size(); i++) {
+			BufferCondition bc = conditions.elementAt(i);
+			if (bc.isSpecial())
+				return true;
+			if (changes.containsKey(bc.getBuffer())
+					&& bc.isAffectedBy(changes.get(bc.getBuffer())))
+				return true;
+		}
+		return false;
+	}
+
 	boolean hasConditionSlotValue(Symbol value) {
 		for (int i = 0; i < conditions.size(); i++)
 			if (conditions.get(i).hasSlotValue(value))
@@ -318,9 +385,7 @@ public class Production {
 
 		if (model.getProcedural().whyNotTrace)
 			model.output(name.getString());
-		double instU = u
-				+ Utilities.getNoise(model.getProcedural().utilityNoiseS);
-		Instantiation inst = new Instantiation(this, model.getTime(), instU);
+		Instantiation inst = new Instantiation(this, model.getTime(), u);
 
 		for (int i = 0; i < conditions.size(); i++) {
 			BufferCondition bc = conditions.elementAt(i);
@@ -346,16 +411,84 @@ public class Production {
 			}
 		}
 
+		inst.setUtility(u
+				+ Utilities.getNoise(model.getProcedural().utilityNoiseS));
 		if (model.getProcedural().whyNotTrace)
 			model.output("   * instantiation succeeded: " + inst + "\n");
 		model.getProcedural().whyNotTrace = savedWhyNotTrace;
 		return inst;
 	}
 
+	void compileVariables() {
+		Vector<Symbol> cvs = getConditionVariables();
+		Map<Symbol, Integer> indices = new HashMap<Symbol, Integer>();
+		Vector<Symbol> v = new Vector<Symbol>();
+		for (int i = 0; i < cvs.size(); i++)
+			if (!indices.containsKey(cvs.elementAt(i))) {
+				indices.put(cvs.elementAt(i), v.size());
+				v.add(cvs.elementAt(i));
+			}
+		for (int i = 0; i < conditions.size(); i++) {
+			Iterator<String> it = conditions.elementAt(i).getSpecials();
+			while (it.hasNext()) {
+				Symbol special = Symbol.get(it.next());
+				if (special.isVariable() && !indices.containsKey(special)) {
+					indices.put(special, v.size());
+					v.add(special);
+				}
+			}
+		}
+		for (int i = 0; i < conditions.size(); i++)
+			conditions.elementAt(i).compileVariables(indices);
+		variables = v.toArray(new Symbol[v.size()]);
+		matcher = null;
+	}
+
+	void prepareMatch() {
+		if (variables == null)
+			compileVariables();
+		if (model.getProcedural().compiledMatching && matcher == null)
+			matcher = new CompiledMatcher(this, variables, model);
+	}
+
+	Instantiation match(Buffers buffers, Bindings bindings) {
+		Instantiation inst = matchWithoutNoise(buffers, bindings);
+		if (inst != null)
+			inst.setUtility(u
+					+ Utilities.getNoise(model.getProcedural().utilityNoiseS));
+		return inst;
+	}
+
+	Instantiation matchWithoutNoise(Buffers buffers, Bindings bindings) {
+		prepareMatch();
+		bindings.reset(variables.length);
+		if (model.getProcedural().compiledMatching) {
+			if (!matcher.match(bindings))
+				return null;
+		} else {
+			for (int i = 0; i < conditions.size(); i++)
+				if (!conditions.elementAt(i).match(bindings))
+					return null;
+		}
+		int delayed = bindings.delayedCount;
+		for (int i = 0; i < delayed; i++)
+			if (!bindings.delayedConditions[i].match(
+					bindings.delayedBuffers[i], bindings.delayedChunks[i],
+					bindings))
+				return null;
+
+		Instantiation inst = new Instantiation(this, model.getTime(), u);
+		for (int i = 0; i < variables.length; i++)
+			if (bindings.values[i] != null)
+				inst.set(variables[i], bindings.values[i]);
+		inst.setThreadID(bindings.threadID);
+		return inst;
+	}
+
 	void fire(Instantiation inst) {
 		Chunk goal = model.getBuffers().get(Symbol.goal);
 		if (goal != null)
-			goal.setLastUsedAsGoal(model.getTime());
+			model.getBuffers().setLastUsedAsGoal(goal, model.getTime());
 
 		for (int i = 0; i < conditions.size(); i++) {
 			BufferCondition bc = conditions.elementAt(i);
@@ -380,6 +513,7 @@ public class Production {
 		}
 
 		timesFired++;
+		lastUsedTime = model.getTime();
 	}
 
 	void specialize(Symbol variable, Symbol value) {
@@ -392,6 +526,7 @@ public class Production {
 			conditions.elementAt(i).specialize(variable, value);
 		for (int i = 0; i < actions.size(); i++)
 			actions.elementAt(i).specialize(variable, value);
+		variables = null;
 	}
 
 	void expandDirectActions(Instantiation inst) {
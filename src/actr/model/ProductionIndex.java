@@ -0,0 +1,148 @@
+package actr.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Index from buffer contents to the productions that could match them, used
+ * to rule out most productions before instantiation.
+ * <p>
+ * Each production is filed under one buffer condition: a constant
+ * <tt>isa</tt> test, preferably on the goal buffer, or otherwise the buffer
+ * being full. A production is a candidate when the buffer it is filed under
+ * matches and all the buffers its conditions test are full. The candidates
+ * filed under the goal buffer can be found separately from the others, since
+ * only they depend on which goal chunk is in the goal buffer.
+ * 
+ * @author Dario Salvucci
+ */
+class ProductionIndex {
+	private Model model;
+	private Map<Symbol, Map<Symbol, Vector<Entry>>> typeIndex;
+	private Map<Symbol, Vector<Entry>> bufferIndex;
+	private Vector<Entry> unindexed;
+	private Map<Production, Entry> entries;
+
+	class Entry {
+		Production production;
+		Vector<Entry> list;
+		Symbol[] required;
+	}
+
+	ProductionIndex(Model model) {
+		this.model = model;
+		typeIndex = new HashMap<Symbol, Map<Symbol, Vector<Entry>>>();
+		bufferIndex = new HashMap<Symbol, Vector<Entry>>();
+		unindexed = new Vector<Entry>();
+		entries = new HashMap<Production, Entry>();
+	}
+
+	void add(Production p) {
+		Vector<Symbol> required = new Vector<Symbol>();
+		Symbol typeBuffer = null;
+		Symbol type = null;
+		Iterator<BufferCondition> it = p.getConditions();
+		while (it.hasNext()) {
+			BufferCondition bc = it.next();
+			if (bc.isSpecial())
+				continue;
+			Symbol buffer = bc.getBuffer();
+			if (!required.contains(buffer))
+				required.add(buffer);
+			SlotCondition sc = bc.getSlotCondition(Symbol.isa);
+			if (sc != null && sc.getOperator() == null
+					&& !sc.getValue().isVariable()
+					&& (type == null || buffer == Symbol.goal)) {
+				typeBuffer = buffer;
+				type = sc.getValue();
+			}
+		}
+
+		Entry entry = new Entry();
+		entry.production = p;
+		entry.required = required.toArray(new Symbol[required.size()]);
+		if (type != null) {
+			Map<Symbol, Vector<Entry>> types = typeIndex.get(typeBuffer);
+			if (types == null) {
+				types = new HashMap<Symbol, Vector<Entry>>();
+				typeIndex.put(typeBuffer, types);
+			}
+			entry.list = types.get(type);
+			if (entry.list == null) {
+				entry.list = new Vector<Entry>();
+				types.put(type, entry.list);
+			}
+		} else if (!required.isEmpty()) {
+			entry.list = bufferIndex.get(required.firstElement());
+			if (entry.list == null) {
+				entry.list = new Vector<Entry>();
+				bufferIndex.put(required.firstElement(), entry.list);
+			}
+		} else
+			entry.list = unindexed;
+		entry.list.add(entry);
+		entries.put(p, entry);
+	}
+
+	void remove(Production p) {
+		Entry entry = entries.remove(p);
+		if (entry != null)
+			entry.list.remove(entry);
+	}
+
+	/**
+	 * Adds to the given set the candidates filed under the goal buffer if
+	 * <tt>goal</tt> is <tt>true</tt>, or all other candidates otherwise.
+	 */
+	void findCandidates(Buffers buffers, Set<Production> candidates,
+			boolean goal) {
+		if (goal) {
+			addTypeCandidates(buffers, Symbol.goal, candidates);
+			return;
+		}
+		addCandidates(buffers, unindexed, candidates);
+		Iterator<Symbol> it = typeIndex.keySet().iterator();
+		while (it.hasNext()) {
+			Symbol buffer = it.next();
+			if (buffer != Symbol.goal)
+				addTypeCandidates(buffers, buffer, candidates);
+		}
+		it = bufferIndex.keySet().iterator();
+		while (it.hasNext()) {
+			Symbol buffer = it.next();
+			if (buffers.get(buffer) != null)
+				addCandidates(buffers, bufferIndex.get(buffer), candidates);
+		}
+	}
+
+	private void addTypeCandidates(Buffers buffers, Symbol buffer,
+			Set<Production> candidates) {
+		Map<Symbol, Vector<Entry>> types = typeIndex.get(buffer);
+		Chunk chunk = buffers.get(buffer);
+		if (types == null || chunk == null)
+			return;
+		Symbol chunkType = chunk.get(Symbol.isa);
+		Iterator<Symbol> it = types.keySet().iterator();
+		while (it.hasNext()) {
+			Symbol type = it.next();
+			if (type == chunkType || model.getDeclarative().isa(chunkType, type))
+				addCandidates(buffers, types.get(type), candidates);
+		}
+	}
+
+	private void addCandidates(Buffers buffers, Vector<Entry> list,
+			Set<Production> candidates) {
+		for (int i = 0; i < list.size(); i++) {
+			Entry entry = list.elementAt(i);
+			Symbol[] required = entry.required;
+			boolean full = true;
+			for (int j = 0; full && j < required.length; j++)
+				full = (buffers.get(required[j]) != null);
+			if (full)
+				candidates.add(entry.production);
+		}
+	}
+}
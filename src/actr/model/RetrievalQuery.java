@@ -0,0 +1,179 @@
+package actr.model;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.Vector;
+
+/**
+ * A retrieval request compiled into a query plan over declarative memory.
+ * <p>
+ * The request chunk is interpreted once, when the plan is built: its slots
+ * are split into those that must match exactly (all slots without partial
+ * matching, and the <tt>isa</tt> and <tt>:</tt> slots with it) and those left
+ * to the mismatch penalty, the <tt>:recently-retrieved</tt> slot becomes a
+ * single flag test, and the request's <tt>-</tt>, <tt>&lt;</tt> and
+ * <tt>&gt;</tt> conditions become tests with their operator and numeric value
+ * resolved. Modified conditions always match exactly, also under partial
+ * matching. The plan then draws its candidates from the slot index of the
+ * most selective exact slot and tests each one in a tight loop.
+ * 
+ * @author Dario Salvucci
+ */
+class RetrievalQuery {
+	private static final int EQUAL = 0, NOT_EQUAL = 1, LT = 2, GT = 3, LE = 4,
+			GE = 5;
+
+	private Declarative declarative;
+	private Symbol[] slots;
+	private Symbol[] values;
+	private int[] operators;
+	private double[] numbers;
+	private int count;
+	private boolean testRetrieved;
+	private boolean retrieved;
+	private boolean reset;
+
+	RetrievalQuery(Chunk request, Declarative declarative) {
+		this.declarative = declarative;
+		Vector<Symbol> vSlots = new Vector<Symbol>();
+		Vector<Symbol> vValues = new Vector<Symbol>();
+		Vector<Integer> vOperators = new Vector<Integer>();
+		Iterator<Symbol> it = request.getSlotNames();
+		while (it.hasNext()) {
+			Symbol slot = it.next();
+			Symbol value = request.get(slot);
+			if (slot == Symbol.recentlyRetrieved) {
+				if (value == Symbol.reset)
+					reset = true;
+				else {
+					testRetrieved = true;
+					retrieved = value.toBoolean();
+				}
+			} else if (!declarative.partialMatching || slot == Symbol.isa
+					|| slot.getString().charAt(0) == ':') {
+				vSlots.add(slot);
+				vValues.add(value);
+				vOperators.add(EQUAL);
+			}
+		}
+		Iterator<SlotCondition> itSC = request.getRequestConditions();
+		while (itSC.hasNext()) {
+			SlotCondition sc = itSC.next();
+			int operator = getOperator(sc.getOperator());
+			if (operator < 0)
+				continue;
+			vSlots.add(sc.getSlot());
+			vValues.add(sc.getValue());
+			vOperators.add(operator);
+		}
+		count = vSlots.size();
+		slots = vSlots.toArray(new Symbol[count]);
+		values = vValues.toArray(new Symbol[count]);
+		operators = new int[count];
+		numbers = new double[count];
+		for (int i = 0; i < count; i++) {
+			operators[i] = vOperators.elementAt(i);
+			if (operators[i] >= LT)
+				numbers[i] = values[i].isNumber() ? values[i].toDouble()
+						: Double.NaN;
+		}
+	}
+
+	private static int getOperator(String operator) {
+		if (operator == null)
+			return EQUAL;
+		else if (operator.equals("-"))
+			return NOT_EQUAL;
+		else if (operator.equals("<"))
+			return LT;
+		else if (operator.equals(">"))
+			return GT;
+		else if (operator.equals("<="))
+			return LE;
+		else if (operator.equals(">="))
+			return GE;
+		return -1;
+	}
+
+	/**
+	 * Checks whether the request resets the declarative finsts.
+	 */
+	boolean isReset() {
+		return reset;
+	}
+
+	/**
+	 * Gets the chunks that may match the request, in the order in which they
+	 * were added to memory. The candidates are the postings of the most
+	 * selective exact equality test; a test for nil also matches chunks
+	 * without the slot and so cannot narrow the search.
+	 */
+	Collection<Chunk> getCandidates() {
+		Vector<TreeSet<Chunk>> best = null;
+		int bestSize = 0;
+		for (int i = 0; i < count; i++) {
+			if (operators[i] != EQUAL || values[i] == Symbol.nil)
+				continue;
+			Vector<TreeSet<Chunk>> postings = declarative.getPostings(
+					slots[i], values[i]);
+			int size = 0;
+			for (int j = 0; j < postings.size(); j++)
+				size += postings.elementAt(j).size();
+			if (best == null || size < bestSize) {
+				best = postings;
+				bestSize = size;
+			}
+		}
+		if (best == null)
+			return declarative.getChunkCollection();
+		if (best.size() == 1)
+			return best.firstElement();
+		TreeSet<Chunk> union = new TreeSet<Chunk>(Declarative.memoryOrder);
+		for (int i = 0; i < best.size(); i++)
+			union.addAll(best.elementAt(i));
+		return union;
+	}
+
+	/**
+	 * Checks whether a chunk passes all of the plan's exact tests.
+	 */
+	boolean matches(Chunk chunk) {
+		if (testRetrieved && chunk.isRetrieved() != retrieved)
+			return false;
+		for (int i = 0; i < count; i++) {
+			Symbol value = chunk.get(slots[i]);
+			switch (operators[i]) {
+			case EQUAL:
+				if (value != values[i] && !declarative.isa(value, values[i]))
+					return false;
+				break;
+			case NOT_EQUAL:
+				if (value == values[i] || declarative.isa(value, values[i]))
+					return false;
+				break;
+			default:
+				if (!compare(value, operators[i], numbers[i]))
+					return false;
+				break;
+			}
+		}
+		return true;
+	}
+
+	private static boolean compare(Symbol value, int operator, double number) {
+		if (Double.isNaN(number) || value == Symbol.nil || !value.isNumber())
+			return false;
+		double chunkNumber = value.toDouble();
+		switch (operator) {
+		case LT:
+			return chunkNumber < number;
+		case GT:
+			return chunkNumber > number;
+		case LE:
+			return chunkNumber <= number;
+		default:
+			return chunkNumber >= number;
+		}
+	}
+}
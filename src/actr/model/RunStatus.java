@@ -0,0 +1,73 @@
+package actr.model;
+
+/**
+ * The outcome of a model run, giving the reason the run ended, the number of
+ * events processed, and the simulated time reached.
+ * 
+ * @author Dario Salvucci
+ */
+public class RunStatus {
+	/**
+	 * The reasons for which a run can end.
+	 */
+	public enum Reason {
+		/** The event queue is empty. */
+		DONE,
+		/** <tt>stop()</tt> was called, by the task or by another thread. */
+		STOPPED,
+		/** The next event would occur after the simulated time limit. */
+		TIME_LIMIT,
+		/** The run processed the maximum number of events. */
+		EVENT_LIMIT,
+		/** The run used up its wall-clock budget. */
+		WALL_CLOCK_LIMIT
+	}
+
+	private Reason reason;
+	private long events;
+	private double time;
+
+	RunStatus(Reason reason, long events, double time) {
+		this.reason = reason;
+		this.events = events;
+		this.time = time;
+	}
+
+	/**
+	 * Gets the reason the run ended.
+	 * 
+	 * @return the reason
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Gets the number of events processed during the run.
+	 * 
+	 * @return the number of events
+	 */
+	public long getEvents() {
+		return events;
+	}
+
+	/**
+	 * Gets the simulated time at the end of the run.
+	 * 
+	 * @return the time in seconds from the start of simulation
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets a string representation of the run status.
+	 * 
+	 * @return the string
+	 */
+	@Override
+	public String toString() {
+		return "[run: " + reason + " after " + events + " events at " + time
+				+ "]";
+	}
+}
@@ -30,6 +30,11 @@ class SlotAction {
 		return (slot == sa2.slot && value == sa2.value);
 	}
 
+	int structuralHash() {
+		// the operator is not compared by equals, so it is not hashed
+		return 31 * slot.structuralHash() + value.structuralHash();
+	}
+
 	public String getOperator() {
 		return operator;
 	}
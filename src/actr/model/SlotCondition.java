@@ -1,5 +1,6 @@
 package actr.model;
 
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -12,6 +13,8 @@ class SlotCondition {
 	private Symbol slot;
 	private Symbol value;
 	private String operator;
+	private int slotIndex = -1;
+	private int valueIndex = -1;
 
 	SlotCondition(String operator, Symbol slot, Symbol value, Model model) {
 		this.operator = operator;
@@ -31,6 +34,12 @@ class SlotCondition {
 			return (operator.equals(sc2.operator) && slot == sc2.slot && value == sc2.value);
 	}
 
+	int structuralHash() {
+		int h = (operator == null) ? 0 : operator.hashCode();
+		h = 31 * h + slot.structuralHash();
+		return 31 * h + value.structuralHash();
+	}
+
 	public Symbol getSlot() {
 		return slot;
 	}
@@ -68,6 +77,48 @@ class SlotCondition {
 			}
 		}
 
+		return compare(bufferValue, testValue);
+	}
+
+	void compileVariables(Map<Symbol, Integer> indices) {
+		slotIndex = slot.isVariable() ? indices.get(slot) : -1;
+		valueIndex = value.isVariable() ? indices.get(value) : -1;
+	}
+
+	/**
+	 * Checks whether the test depends only on the buffer chunk and not on
+	 * the variable bindings.
+	 */
+	boolean isConstant() {
+		return !slot.isVariable() && !value.isVariable();
+	}
+
+	boolean match(Symbol buffer, Chunk bufferChunk, Bindings bindings) {
+		boolean negated = (operator != null && operator.equals("-"));
+
+		Symbol realSlot = (slotIndex >= 0) ? bindings.values[slotIndex] : slot;
+		if (realSlot == null) {
+			bindings.delay(buffer, this, bufferChunk);
+			return true;
+		}
+
+		Symbol bufferValue = bufferChunk.get(realSlot);
+		if (bufferValue == null)
+			return negated;
+		Symbol testValue = value;
+		if (valueIndex >= 0) {
+			if (bufferValue == Symbol.nil)
+				return negated;
+			testValue = bindings.values[valueIndex];
+			if (testValue == null) {
+				bindings.values[valueIndex] = bufferValue;
+				return true;
+			}
+		}
+		return compare(bufferValue, testValue);
+	}
+
+	boolean compare(Symbol bufferValue, Symbol testValue) {
 		if (operator == null)
 			return (testValue == bufferValue)
 					|| model.getDeclarative().isa(bufferValue, testValue);
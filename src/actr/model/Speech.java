@@ -33,7 +33,7 @@ public class Speech extends Module {
 				Symbol.busy);
 		model.getBuffers()
 				.setSlot(Symbol.vocalState, Symbol.state, Symbol.busy);
-		model.addEvent(new Event(time, "speech", "preparation-complete") {
+		model.addEvent(new Event(time, Symbol.speech, "preparation-complete") {
 			@Override
 			public void action() {
 				model.getBuffers().setSlot(Symbol.vocalState,
@@ -46,7 +46,7 @@ public class Speech extends Module {
 
 	double initiateMovement(double time) {
 		time += initiationTime;
-		model.addEvent(new Event(time, "speech", "initiation-complete") {
+		model.addEvent(new Event(time, Symbol.speech, "initiation-complete") {
 			@Override
 			public void action() {
 				model.getBuffers().setSlot(Symbol.vocalState, Symbol.processor,
@@ -59,7 +59,7 @@ public class Speech extends Module {
 	}
 
 	void finishMovement(double time) {
-		model.addEvent(new Event(time, "speech", "finish-movement") {
+		model.addEvent(new Event(time, Symbol.speech, "finish-movement") {
 			@Override
 			public void action() {
 				model.getBuffers().setSlot(Symbol.vocalState, Symbol.execution,
@@ -95,7 +95,7 @@ public class Speech extends Module {
 					Symbol.busy);
 			model.getBuffers().setSlot(Symbol.vocalState, Symbol.state,
 					Symbol.busy);
-			model.addEvent(new Event(eventTime + clearTime, "speech",
+			model.addEvent(new Event(eventTime + clearTime, Symbol.speech,
 					"change state last none prep free") {
 				@Override
 				public void action() {
@@ -116,8 +116,12 @@ public class Speech extends Module {
 				model.output("speech", "speak \"" + text + "\"");
 			eventTime = prepareMovement(eventTime, text);
 			eventTime = initiateMovement(eventTime);
-			model.addEvent(new Event(eventTime, "speech", "output-speech \""
-					+ text + "\"") {
+			model.addEvent(new Event(eventTime, Symbol.speech, "output-speech") {
+				@Override
+				protected String describe() {
+					return "output-speech \"" + text + "\"";
+				}
+
 				@Override
 				public void action() {
 					model.getTask().speak(text);
@@ -135,8 +139,12 @@ public class Speech extends Module {
 				model.output("speech", "subvocalize \"" + text + "\"");
 			eventTime = prepareMovement(eventTime, text);
 			eventTime = initiateMovement(eventTime);
-			model.addEvent(new Event(eventTime, "", "output-subvocalize \""
-					+ text + "\"") {
+			model.addEvent(new Event(eventTime, Symbol.untraced, "output-subvocalize") {
+				@Override
+				protected String describe() {
+					return "output-subvocalize \"" + text + "\"";
+				}
+
 				@Override
 				public void action() {
 					sendVocalToAudio(text);
@@ -0,0 +1,98 @@
+package actr.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The spreading activation from the goal and imaginal buffers for a single
+ * retrieval.
+ * <p>
+ * Rather than having each candidate chunk walk the source chunks' slots,
+ * the activation is pushed once from each source: every chunk in a source
+ * slot spreads its associative strength to itself and to the chunks in
+ * memory that refer to it, as found in declarative memory's reverse index
+ * of slot references. A candidate's spreading activation is then a lookup,
+ * and the cost depends on the fan of the sources rather than on the number
+ * of candidates. The strengths are summed in the same order as
+ * <tt>Chunk.computeSpreadingActivation()</tt>, so the activations are the
+ * same.
+ * 
+ * @author Dario Salvucci
+ */
+class SpreadingActivation {
+	private Model model;
+	private Source goal;
+	private Source imaginal;
+
+	class Source {
+		double wji;
+		Map<Chunk, Double> sums = new HashMap<Chunk, Double>();
+
+		Source(Chunk source, double totalW) {
+			Declarative declarative = model.getDeclarative();
+			int numSourceSlots = 0;
+			Iterator<Symbol> it = source.getSlotNames();
+			while (it.hasNext()) {
+				Symbol slot = it.next();
+				if (slot == Symbol.isa || slot.getString().startsWith(":"))
+					continue;
+				Symbol value = source.get(slot);
+				if (value == Symbol.nil)
+					continue;
+				Chunk cj = declarative.get(value);
+				if (cj == null)
+					continue;
+				numSourceSlots++;
+				double sji = declarative.maximumAssociativeStrength
+						- Math.log(cj.getFan());
+				Map<Chunk, Integer> referrers = declarative.getReferrers(value);
+				if (referrers != null) {
+					Iterator<Chunk> itReferrers = referrers.keySet().iterator();
+					while (itReferrers.hasNext())
+						add(itReferrers.next(), sji);
+				}
+				if (referrers == null || !referrers.containsKey(cj))
+					add(cj, sji);
+			}
+			wji = (numSourceSlots == 0) ? 0 : totalW / numSourceSlots;
+		}
+
+		private void add(Chunk ci, double sji) {
+			Double sum = sums.get(ci);
+			sums.put(ci, (sum == null) ? sji : sum + sji);
+		}
+
+		double get(Chunk ci) {
+			Double sum = sums.get(ci);
+			return (sum == null) ? 0 : wji * sum;
+		}
+	}
+
+	SpreadingActivation(Model model) {
+		this.model = model;
+		Declarative declarative = model.getDeclarative();
+		if (declarative.goalActivation > 0) {
+			Chunk chunk = model.getBuffers().get(Symbol.goal);
+			if (chunk != null)
+				goal = new Source(chunk, declarative.goalActivation);
+		}
+		if (declarative.imaginalActivation > 0) {
+			Chunk chunk = model.getBuffers().get(Symbol.imaginal);
+			if (chunk != null)
+				imaginal = new Source(chunk, declarative.imaginalActivation);
+		}
+	}
+
+	/**
+	 * Adds the spreading activation received by a chunk to the given
+	 * activation, first from the goal and then from the imaginal buffer.
+	 */
+	double addTo(Chunk ci, double activation) {
+		if (goal != null)
+			activation += goal.get(ci);
+		if (imaginal != null)
+			activation += imaginal.get(ci);
+		return activation;
+	}
+}
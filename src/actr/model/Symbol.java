@@ -29,6 +29,7 @@ import java.util.Set;
  */
 public class Symbol {
 	private String string;
+	private Double number;
 	private static Map<String, Symbol> hashmap = new HashMap<String, Symbol>();
 	private static long unique = 1;
 	private static Set<Symbol> pervasives = new HashSet<Symbol>();
@@ -163,6 +164,9 @@ public class Symbol {
 	public static final Symbol recentlyRetrieved = Symbol
 			.createPervasiveSymbol(":recently-retrieved");
 
+	/** Pervasive symbol for the string <tt>"reset"</tt>. */
+	public static final Symbol reset = Symbol.createPervasiveSymbol("reset");
+
 	/** Pervasive symbol for the string <tt>"kind"</tt>. */
 	public static final Symbol kind = Symbol.createPervasiveSymbol("kind");
 
@@ -250,6 +254,41 @@ public class Symbol {
 	/** Pervasive symbol for the string <tt>"ticks"</tt>. */
 	public static final Symbol ticks = Symbol.createPervasiveSymbol("ticks");
 
+	/** Pervasive symbol for the module string <tt>"procedural"</tt>. */
+	public static final Symbol procedural = Symbol
+			.createPervasiveSymbol("procedural");
+
+	/** Pervasive symbol for the module string <tt>"declarative"</tt>. */
+	public static final Symbol declarative = Symbol
+			.createPervasiveSymbol("declarative");
+
+	/** Pervasive symbol for the module string <tt>"vision"</tt>. */
+	public static final Symbol vision = Symbol.createPervasiveSymbol("vision");
+
+	/** Pervasive symbol for the module string <tt>"eye"</tt>. */
+	public static final Symbol eye = Symbol.createPervasiveSymbol("eye");
+
+	/** Pervasive symbol for the module string <tt>"audio"</tt>. */
+	public static final Symbol audio = Symbol.createPervasiveSymbol("audio");
+
+	/** Pervasive symbol for the module string <tt>"motor"</tt>. */
+	public static final Symbol motor = Symbol.createPervasiveSymbol("motor");
+
+	/** Pervasive symbol for the module string <tt>"speech"</tt>. */
+	public static final Symbol speech = Symbol.createPervasiveSymbol("speech");
+
+	/** Pervasive symbol for the module string <tt>"bold"</tt>. */
+	public static final Symbol bold = Symbol.createPervasiveSymbol("bold");
+
+	/** Pervasive symbol for the module string <tt>"task"</tt>. */
+	public static final Symbol task = Symbol.createPervasiveSymbol("task");
+
+	/**
+	 * Pervasive symbol for the empty module string <tt>""</tt>, used for
+	 * events that do not appear in the trace.
+	 */
+	public static final Symbol untraced = Symbol.createPervasiveSymbol("");
+
 	private Symbol(String string) {
 		this.string = string;
 	}
@@ -352,6 +391,20 @@ public class Symbol {
 		return string.length() > 1 && string.charAt(0) == '=';
 	}
 
+	/**
+	 * Gets a hash code for the symbol as part of a production's structure.
+	 * The code depends only on the symbol's string, so it is the same from
+	 * run to run, and it is the same for all variables, so that it does not
+	 * depend on how the production's variables are named.
+	 */
+	int structuralHash() {
+		return structuralHash(string);
+	}
+
+	static int structuralHash(String s) {
+		return (s.length() > 1 && s.charAt(0) == '=') ? 61 : s.hashCode();
+	}
+
 	/**
 	 * Checks whether the symbol represents a number.
 	 * 
@@ -395,7 +448,9 @@ public class Symbol {
 	 * @return the double value
 	 */
 	public double toDouble() {
-		return Double.valueOf(string).doubleValue();
+		if (number == null)
+			number = Double.valueOf(string);
+		return number.doubleValue();
 	}
 
 	/**
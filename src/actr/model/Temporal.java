@@ -9,6 +9,7 @@ public class Temporal extends Module {
 	private Model model;
 	private int ticks = 0;
 	private double tick = 0;
+	private Event tickEvent;
 
 	double timeNoise = .015;
 	double timeMultiplier = 1.1;
@@ -40,14 +41,24 @@ public class Temporal extends Module {
 			model.getBuffers().setSlot(Symbol.temporalState, Symbol.state,
 					Symbol.busy);
 
-			model.removeEvents("temporal");
+			model.removeEvents(Symbol.temporal);
 			queueTickIncrement();
 		}
 	}
 
 	void queueTickIncrement() {
-		model.addEvent(new Event(model.getTime() + tick, "temporal",
-				"increment ticks [" + (ticks + 1) + "]") {
+		if (tickEvent == null)
+			tickEvent = createTickEvent();
+		model.rescheduleEvent(tickEvent, model.getTime() + tick);
+	}
+
+	private Event createTickEvent() {
+		return new Event(0, Symbol.temporal, "increment") {
+			@Override
+			protected String describe() {
+				return "increment ticks [" + (ticks + 1) + "]";
+			}
+
 			@Override
 			public void action() {
 				ticks++;
@@ -59,6 +70,6 @@ public class Temporal extends Module {
 
 				queueTickIncrement();
 			}
-		});
+		};
 	}
 }
@@ -0,0 +1,49 @@
+package actr.model;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The default event queue, a balanced tree with logarithmic insertion and
+ * removal.
+ * 
+ * @author Dario Salvucci
+ */
+class TreeEventQueue implements EventQueue {
+	private TreeSet<Event> events = new TreeSet<Event>();
+
+	@Override
+	public boolean add(Event event) {
+		return events.add(event);
+	}
+
+	@Override
+	public boolean remove(Object event) {
+		return events.remove(event);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return events.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return events.size();
+	}
+
+	@Override
+	public Event first() {
+		return events.first();
+	}
+
+	@Override
+	public Event pollFirst() {
+		return events.pollFirst();
+	}
+
+	@Override
+	public Iterator<Event> iterator() {
+		return events.iterator();
+	}
+}
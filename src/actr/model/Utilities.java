@@ -17,6 +17,16 @@ public class Utilities {
 		return (++currentID);
 	}
 
+	static final long clockTicksPerSecond = 1000000;
+
+	static long toClock(double seconds) {
+		return Math.round(seconds * clockTicksPerSecond);
+	}
+
+	static double toSeconds(long clock) {
+		return clock / (double) clockTicksPerSecond;
+	}
+
 	/**
 	 * Gets a noise value sampled from the standard ACT-R noise distribution.
 	 * The normal approximation used here is derived from the canonical ACT-R
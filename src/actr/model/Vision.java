@@ -284,7 +284,8 @@ public class Vision extends Module {
 
 		if (slot == Symbol.get(":attended")) {
 			if (value == Symbol.get("new")) {
-				if (vo.creationTime < model.getTime() - visualOnsetSpan)
+				if (Utilities.toClock(vo.creationTime) < model.getClock()
+						- Utilities.toClock(visualOnsetSpan))
 					return false;
 				else
 					return true;
@@ -508,7 +509,8 @@ public class Vision extends Module {
 	void update() {
 		for (int i = 0; i < finsts.size(); i++) {
 			VisualObject vo = finsts.elementAt(i);
-			if (vo.attendedTime < model.getTime() - visualFinstSpan) {
+			if (Utilities.toClock(vo.attendedTime) < model.getClock()
+					- Utilities.toClock(visualFinstSpan)) {
 				vo.attended = false;
 				vo.attendedTime = 0;
 				finsts.removeElementAt(i);
@@ -577,8 +579,13 @@ public class Vision extends Module {
 			vo.encodingTime = encodingTime;
 			lastEncodedVisObj = vo;
 
-			model.addEvent(new Event(model.getTime() + encodingTime, "vision",
-					"encoding-complete [" + visual.getName() + "]") {
+			model.addEvent(new Event(model.getTime() + encodingTime, Symbol.vision,
+					"encoding-complete") {
+				@Override
+				protected String describe() {
+					return "encoding-complete [" + visual.getName() + "]";
+				}
+
 				@Override
 				public void action() {
 					model.getTask().moveAttention(vo.x, vo.y);
@@ -605,8 +612,13 @@ public class Vision extends Module {
 	private void prepareEyeMovement(final VisualObject vo, final Chunk visual) {
 		model.removeEvents("eye", "preparation-complete");
 
-		model.addEvent(new Event(model.getTime() + emmaPreparationTime, "eye",
-				"preparation-complete [" + visual.getName() + "]") {
+		model.addEvent(new Event(model.getTime() + emmaPreparationTime, Symbol.eye,
+				"preparation-complete") {
+			@Override
+			protected String describe() {
+				return "preparation-complete [" + visual.getName() + "]";
+			}
+
 			@Override
 			public void action() {
 				executeEyeMovement(vo, visual);
@@ -618,8 +630,13 @@ public class Vision extends Module {
 		double executionTime = emmaExecutionBaseTime
 				+ emmaExecutionTimeIncrement * computeEccentricity(vo);
 
-		model.addEvent(new Event(model.getTime() + executionTime, "eye",
-				"execution-complete [" + visual.getName() + "]") {
+		model.addEvent(new Event(model.getTime() + executionTime, Symbol.eye,
+				"execution-complete") {
+			@Override
+			protected String describe() {
+				return "execution-complete [" + visual.getName() + "]";
+			}
+
 			@Override
 			public void action() {
 				double sd = .1 * Utilities
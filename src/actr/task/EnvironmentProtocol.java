@@ -0,0 +1,180 @@
+package actr.task;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary protocol between an {@link EnvironmentTask} and an external
+ * environment, such as a driving or interface simulator.
+ * <p>
+ * The model and the environment advance in lockstep, one frame at a time. All
+ * values are written in network byte order with the standard
+ * <tt>DataOutputStream</tt> encodings (strings as modified UTF-8 with a
+ * two-byte length). Each message is a one-byte code followed by its fields:
+ * <ul>
+ * <li>On connecting, the model sends <tt>HELLO version:int period:long</tt>,
+ * with the frame period in microseconds of simulated time.</li>
+ * <li>At the end of each frame, the model sends <tt>FRAME time:long</tt> (the
+ * simulated time in microseconds), then the motor and speech outputs of the
+ * frame in the order they occurred (<tt>KEY</tt>, <tt>SPEAK</tt>,
+ * <tt>MOUSE_MOVE</tt>, <tt>MOUSE_CLICK</tt>), then <tt>END</tt>.</li>
+ * <li>The environment answers each frame with its visual and aural updates
+ * for the next frame (<tt>ADD_VISUAL</tt>, <tt>MOVE_VISUAL</tt>,
+ * <tt>REMOVE_VISUAL</tt>, <tt>CLEAR_VISUAL</tt>, <tt>ADD_AURAL</tt>), then
+ * <tt>END</tt> to continue or <tt>STOP</tt> to stop the model.</li>
+ * <li>When the task finishes, the model sends <tt>BYE</tt>.</li>
+ * </ul>
+ * Each side flushes its stream once per frame, so a frame costs a single
+ * round trip regardless of the number of updates.
+ * 
+ * @author Dario Salvucci
+ */
+public final class EnvironmentProtocol {
+	/** The protocol version sent with <tt>HELLO</tt>. */
+	public static final int VERSION = 1;
+
+	/** The default port for the environment server. */
+	public static final int DEFAULT_PORT = 2650;
+
+	/** <tt>HELLO version:int period:long</tt> (model to environment). */
+	public static final byte HELLO = 1;
+	/** <tt>FRAME time:long</tt> (model to environment). */
+	public static final byte FRAME = 2;
+	/** Ends a batch of messages in either direction. */
+	public static final byte END = 3;
+	/** Stops the model (environment to model, in place of <tt>END</tt>). */
+	public static final byte STOP = 4;
+	/** Closes the connection (model to environment). */
+	public static final byte BYE = 5;
+
+	/**
+	 * <tt>ADD_VISUAL id type value:utf x y w h:int distance:double</tt>
+	 * (environment to model).
+	 */
+	public static final byte ADD_VISUAL = 10;
+	/** <tt>MOVE_VISUAL id:utf x y:int distance:double</tt>. */
+	public static final byte MOVE_VISUAL = 11;
+	/** <tt>REMOVE_VISUAL id:utf</tt>. */
+	public static final byte REMOVE_VISUAL = 12;
+	/** <tt>CLEAR_VISUAL</tt>, removing all visual objects. */
+	public static final byte CLEAR_VISUAL = 13;
+	/** <tt>ADD_AURAL id type content:utf</tt>. */
+	public static final byte ADD_AURAL = 14;
+
+	/** <tt>KEY key:char</tt> (model to environment). */
+	public static final byte KEY = 20;
+	/** <tt>SPEAK text:utf</tt> (model to environment). */
+	public static final byte SPEAK = 21;
+	/** <tt>MOUSE_MOVE x y:int</tt> (model to environment). */
+	public static final byte MOUSE_MOVE = 22;
+	/** <tt>MOUSE_CLICK</tt> (model to environment). */
+	public static final byte MOUSE_CLICK = 23;
+
+	private EnvironmentProtocol() {
+	}
+
+	/**
+	 * Writes an <tt>ADD_VISUAL</tt> message.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param id
+	 *            the unique name of the visual object
+	 * @param type
+	 *            the type of the visual object
+	 * @param value
+	 *            the value of the visual object
+	 * @param x
+	 *            the x coordinate of the visual object
+	 * @param y
+	 *            the y coordinate of the visual object
+	 * @param w
+	 *            the width of the visual object
+	 * @param h
+	 *            the height of the visual object
+	 * @param d
+	 *            the distance of the visual object
+	 * @throws IOException
+	 */
+	public static void writeAddVisual(DataOutputStream out, String id,
+			String type, String value, int x, int y, int w, int h, double d)
+			throws IOException {
+		out.writeByte(ADD_VISUAL);
+		out.writeUTF(id);
+		out.writeUTF(type);
+		out.writeUTF(value);
+		out.writeInt(x);
+		out.writeInt(y);
+		out.writeInt(w);
+		out.writeInt(h);
+		out.writeDouble(d);
+	}
+
+	/**
+	 * Writes a <tt>MOVE_VISUAL</tt> message.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param id
+	 *            the unique name of the visual object
+	 * @param x
+	 *            the new x coordinate of the visual object
+	 * @param y
+	 *            the new y coordinate of the visual object
+	 * @param d
+	 *            the new distance of the visual object
+	 * @throws IOException
+	 */
+	public static void writeMoveVisual(DataOutputStream out, String id, int x,
+			int y, double d) throws IOException {
+		out.writeByte(MOVE_VISUAL);
+		out.writeUTF(id);
+		out.writeInt(x);
+		out.writeInt(y);
+		out.writeDouble(d);
+	}
+
+	/**
+	 * Writes a <tt>REMOVE_VISUAL</tt> message.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param id
+	 *            the unique name of the visual object
+	 * @throws IOException
+	 */
+	public static void writeRemoveVisual(DataOutputStream out, String id)
+			throws IOException {
+		out.writeByte(REMOVE_VISUAL);
+		out.writeUTF(id);
+	}
+
+	/**
+	 * Writes an <tt>ADD_AURAL</tt> message.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param id
+	 *            the unique name of the sound
+	 * @param type
+	 *            the type of the sound
+	 * @param content
+	 *            the content of the sound
+	 * @throws IOException
+	 */
+	public static void writeAddAural(DataOutputStream out, String id,
+			String type, String content) throws IOException {
+		out.writeByte(ADD_AURAL);
+		out.writeUTF(id);
+		out.writeUTF(type);
+		out.writeUTF(content);
+	}
+
+	static void expect(DataInputStream in, byte code) throws IOException {
+		byte b = in.readByte();
+		if (b != code)
+			throw new IOException("environment protocol: expected message "
+					+ code + " but received " + b);
+	}
+}
@@ -0,0 +1,243 @@
+package actr.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import actr.model.Vision;
+
+/**
+ * A task that couples the model to an external environment over a local
+ * socket, using the lockstep {@link EnvironmentProtocol}.
+ * <p>
+ * The task advances in frames of simulated time (60 per second by default).
+ * At the end of each frame, it sends the model's key presses, speech, and
+ * mouse actions of that frame in one batch, and then waits for the
+ * environment's visual and aural updates, which it applies to the vision and
+ * audio modules before the model continues. The model therefore sees the
+ * environment as it was at the most recent frame, and the environment
+ * receives the model's actions at the end of the frame in which they occur.
+ * <p>
+ * The no-argument constructor (used when the task is named in a model) reads
+ * the connection from the system properties <tt>actr.environment.host</tt>
+ * (default <tt>localhost</tt>), <tt>actr.environment.port</tt> (default
+ * {@link EnvironmentProtocol#DEFAULT_PORT}), and
+ * <tt>actr.environment.rate</tt> (frames per second, default 60). A host of
+ * <tt>loopback</tt> starts a {@link LoopbackEnvironment} in the same process,
+ * which is useful for testing without an external simulator.
+ * 
+ * @author Dario Salvucci
+ */
+public class EnvironmentTask extends Task {
+	private String host;
+	private int port;
+	private double period;
+	private Socket socket;
+	private DataInputStream in;
+	private DataOutputStream out;
+	private ByteArrayOutputStream outputBytes;
+	private DataOutputStream outputs;
+	private long frames;
+	private long frameNanos;
+
+	/**
+	 * Constructs a new environment task with the connection given by the
+	 * system properties.
+	 */
+	public EnvironmentTask() {
+		this(System.getProperty("actr.environment.host", "localhost"), Integer
+				.getInteger("actr.environment.port",
+						EnvironmentProtocol.DEFAULT_PORT), 1.0 / Integer
+				.getInteger("actr.environment.rate", 60));
+	}
+
+	/**
+	 * Constructs a new environment task.
+	 * 
+	 * @param host
+	 *            the host of the environment server, or <tt>loopback</tt> for
+	 *            an in-process loopback environment
+	 * @param port
+	 *            the port of the environment server
+	 * @param period
+	 *            the frame period in seconds of simulated time
+	 */
+	public EnvironmentTask(String host, int port, double period) {
+		super();
+		this.host = host;
+		this.port = port;
+		this.period = period;
+		outputBytes = new ByteArrayOutputStream();
+		outputs = new DataOutputStream(outputBytes);
+	}
+
+	@Override
+	public void start() {
+		try {
+			if (host.equals("loopback")) {
+				LoopbackEnvironment loopback = new LoopbackEnvironment(0);
+				loopback.start();
+				socket = new Socket("localhost", loopback.getPort());
+			} else
+				socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(
+					socket.getOutputStream()));
+			out.writeByte(EnvironmentProtocol.HELLO);
+			out.writeInt(EnvironmentProtocol.VERSION);
+			out.writeLong(Math.round(period * 1e6));
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			getModel().stop();
+			return;
+		}
+		addPeriodicUpdate(period);
+	}
+
+	@Override
+	public void update(double time) {
+		if (out == null)
+			return;
+		long start = System.nanoTime();
+		try {
+			out.writeByte(EnvironmentProtocol.FRAME);
+			out.writeLong(Math.round(time * 1e6));
+			outputBytes.writeTo(out);
+			outputBytes.reset();
+			out.writeByte(EnvironmentProtocol.END);
+			out.flush();
+			if (!readUpdates())
+				getModel().stop();
+			frames++;
+			frameNanos += System.nanoTime() - start;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			getModel().stop();
+		}
+	}
+
+	/**
+	 * Gets the average wall-clock time per frame spent exchanging messages with
+	 * the environment, including the environment's own processing.
+	 * 
+	 * @return the average time in milliseconds
+	 */
+	public double getAverageFrameMillis() {
+		return (frames == 0) ? 0 : frameNanos / 1e6 / frames;
+	}
+
+	/**
+	 * Gets the number of frames exchanged with the environment.
+	 * 
+	 * @return the number of frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	private boolean readUpdates() throws IOException {
+		Vision vision = getModel().getVision();
+		while (true) {
+			byte code = in.readByte();
+			switch (code) {
+			case EnvironmentProtocol.ADD_VISUAL:
+				vision.addVisual(in.readUTF(), in.readUTF(), in.readUTF(),
+						in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+						in.readDouble());
+				break;
+			case EnvironmentProtocol.MOVE_VISUAL:
+				vision.moveVisual(in.readUTF(), in.readInt(), in.readInt(),
+						in.readDouble());
+				break;
+			case EnvironmentProtocol.REMOVE_VISUAL:
+				vision.removeVisual(in.readUTF());
+				break;
+			case EnvironmentProtocol.CLEAR_VISUAL:
+				vision.clearVisual();
+				break;
+			case EnvironmentProtocol.ADD_AURAL:
+				addAural(in.readUTF(), in.readUTF(), in.readUTF());
+				break;
+			case EnvironmentProtocol.END:
+				return true;
+			case EnvironmentProtocol.STOP:
+				return false;
+			default:
+				throw new IOException(
+						"environment protocol: unknown message " + code);
+			}
+		}
+	}
+
+	private void queueOutput(byte code, String s, int x, int y) {
+		if (out == null)
+			return;
+		try {
+			outputs.writeByte(code);
+			if (code == EnvironmentProtocol.KEY)
+				outputs.writeChar(x);
+			else if (code == EnvironmentProtocol.SPEAK)
+				outputs.writeUTF(s);
+			else if (code == EnvironmentProtocol.MOUSE_MOVE) {
+				outputs.writeInt(x);
+				outputs.writeInt(y);
+			}
+		} catch (IOException e) {
+			// writes to a byte array do not fail
+		}
+	}
+
+	@Override
+	public void typeKey(char c) {
+		queueOutput(EnvironmentProtocol.KEY, null, c, 0);
+	}
+
+	@Override
+	public void speak(String s) {
+		queueOutput(EnvironmentProtocol.SPEAK, s, 0, 0);
+	}
+
+	@Override
+	public void moveMouse(int x, int y) {
+		super.moveMouse(x, y);
+		queueOutput(EnvironmentProtocol.MOUSE_MOVE, null, x, y);
+	}
+
+	@Override
+	public void clickMouse() {
+		super.clickMouse();
+		queueOutput(EnvironmentProtocol.MOUSE_CLICK, null, 0, 0);
+	}
+
+	@Override
+	public void finish() {
+		if (out != null) {
+			try {
+				out.writeByte(EnvironmentProtocol.BYE);
+				out.flush();
+			} catch (IOException e) {
+			}
+		}
+		close();
+	}
+
+	private void close() {
+		try {
+			if (socket != null)
+				socket.close();
+		} catch (IOException e) {
+		}
+		socket = null;
+		in = null;
+		out = null;
+	}
+}
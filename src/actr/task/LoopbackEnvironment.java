@@ -0,0 +1,202 @@
+package actr.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A simple stand-in for an external environment, serving the
+ * {@link EnvironmentProtocol} on a local port for testing an
+ * {@link EnvironmentTask} without a simulator.
+ * <p>
+ * The environment shows a single letter, starting with "A", and replaces it
+ * with the next letter at a new location whenever the model presses a key. It
+ * also plays a tone once per second of simulated time, and stops the model
+ * after a given duration (60 seconds by default). It records the keys pressed
+ * and the phrases spoken by the model. It can be started in-process with
+ * <tt>start()</tt>, or as a separate process with
+ * <tt>java actr.task.LoopbackEnvironment [port]</tt>.
+ * 
+ * @author Dario Salvucci
+ */
+public class LoopbackEnvironment implements Runnable {
+	private ServerSocket server;
+	private double duration = 60;
+	private StringBuilder typed = new StringBuilder();
+	private StringBuilder spoken = new StringBuilder();
+	private long frames = 0;
+
+	/**
+	 * Creates a new loopback environment listening on the given port of the
+	 * loopback interface, so that only local processes can connect.
+	 * 
+	 * @param port
+	 *            the port, or 0 for any free port
+	 * @throws IOException
+	 */
+	public LoopbackEnvironment(int port) throws IOException {
+		server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * Gets the port on which the environment is listening.
+	 * 
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Sets the simulated time after which the environment stops the model.
+	 * 
+	 * @param duration
+	 *            the duration in seconds
+	 */
+	public void setDuration(double duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Starts serving a single connection in a background thread.
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "loopback environment");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Gets the keys pressed by the model so far.
+	 * 
+	 * @return the typed characters
+	 */
+	public synchronized String getTyped() {
+		return typed.toString();
+	}
+
+	/**
+	 * Gets the phrases spoken by the model so far, separated by spaces.
+	 * 
+	 * @return the spoken phrases
+	 */
+	public synchronized String getSpoken() {
+		return spoken.toString();
+	}
+
+	/**
+	 * Gets the number of frames served so far.
+	 * 
+	 * @return the number of frames
+	 */
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	@Override
+	public void run() {
+		try {
+			Socket socket = server.accept();
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			serve(in, out);
+			socket.close();
+			server.close();
+		} catch (EOFException e) {
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void serve(DataInputStream in, DataOutputStream out)
+			throws IOException {
+		EnvironmentProtocol.expect(in, EnvironmentProtocol.HELLO);
+		in.readInt();
+		in.readLong();
+
+		char letter = 'A';
+		int x = 100, y = 100;
+		long nextTone = 0;
+		while (true) {
+			byte code = in.readByte();
+			if (code == EnvironmentProtocol.BYE)
+				return;
+			if (code != EnvironmentProtocol.FRAME)
+				throw new IOException("environment protocol: unexpected message "
+						+ code);
+			long time = in.readLong();
+			boolean keyPressed = false;
+			for (code = in.readByte(); code != EnvironmentProtocol.END; code = in
+					.readByte()) {
+				if (code == EnvironmentProtocol.KEY) {
+					char c = in.readChar();
+					synchronized (this) {
+						typed.append(c);
+					}
+					keyPressed = true;
+				} else if (code == EnvironmentProtocol.SPEAK) {
+					String s = in.readUTF();
+					synchronized (this) {
+						spoken.append((spoken.length() > 0 ? " " : "") + s);
+					}
+				} else if (code == EnvironmentProtocol.MOUSE_MOVE) {
+					in.readInt();
+					in.readInt();
+				} else if (code != EnvironmentProtocol.MOUSE_CLICK)
+					throw new IOException(
+							"environment protocol: unexpected message " + code);
+			}
+			synchronized (this) {
+				frames++;
+			}
+
+			if (time == 0)
+				EnvironmentProtocol.writeAddVisual(out, "letter", "text", ""
+						+ letter, x, y, 40, 20, 0);
+			else if (keyPressed) {
+				letter = (letter == 'Z') ? 'A' : (char) (letter + 1);
+				x = 50 + (x + 70) % 300;
+				EnvironmentProtocol.writeRemoveVisual(out, "letter");
+				EnvironmentProtocol.writeAddVisual(out, "letter", "text", ""
+						+ letter, x, y, 40, 20, 0);
+			}
+			if (time >= nextTone) {
+				EnvironmentProtocol.writeAddAural(out, "tone" + nextTone,
+						"tone", "high");
+				nextTone += 1000000;
+			}
+			boolean done = (time >= Math.round(duration * 1e6));
+			out.writeByte(done ? EnvironmentProtocol.STOP
+					: EnvironmentProtocol.END);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Runs the loopback environment as a separate process.
+	 * 
+	 * @param args
+	 *            the optional port (by default,
+	 *            {@link EnvironmentProtocol#DEFAULT_PORT})
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.valueOf(args[0])
+				: EnvironmentProtocol.DEFAULT_PORT;
+		LoopbackEnvironment environment = new LoopbackEnvironment(port);
+		System.out.println("loopback environment listening on port " + port);
+		environment.run();
+		System.out.println("typed: " + environment.getTyped());
+		System.out.println("spoken: " + environment.getSpoken());
+		System.out.println("frames: " + environment.getFrames());
+	}
+}
@@ -466,7 +466,7 @@ public class Task extends JPanel {
 	public void addAural(double timeDelta, final String id, final String type,
 			final String content) {
 		model.addEvent(new actr.model.Event(model.getTime() + timeDelta,
-				"task", "update") {
+				actr.model.Symbol.task, "update") {
 			@Override
 			public void action() {
 				addAural(id, type, content);
@@ -494,7 +494,7 @@ public class Task extends JPanel {
 	 */
 	public void addUpdate(final double timeDelta) {
 		model.addEvent(new actr.model.Event(model.getTime() + timeDelta,
-				"task", "update") {
+				actr.model.Symbol.task, "update") {
 			@Override
 			public void action() {
 				update(model.getTime());
@@ -512,10 +512,11 @@ public class Task extends JPanel {
 	public void addPeriodicUpdate(final double timeDelta) {
 		update(model.getTime());
 		model.addEvent(new actr.model.Event(model.getTime() + timeDelta,
-				"task", "update") {
+				actr.model.Symbol.task, "update") {
 			@Override
 			public void action() {
-				addPeriodicUpdate(timeDelta);
+				update(model.getTime());
+				model.rescheduleEvent(this, model.getTime() + timeDelta);
 			}
 		});
 	}